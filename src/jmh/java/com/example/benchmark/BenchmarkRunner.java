@@ -0,0 +1,166 @@
+package com.example.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.core.util.DefaultIndenter;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler, writes the results as JSON and
+ * compares them with a checked-in baseline. The process exits with status 1 if
+ * any benchmark's throughput dropped, its time per operation grew, or its
+ * allocation per operation grew, by more than the tolerance, or if a benchmark
+ * has no baseline to compare with. --update-baseline records the benchmarks that
+ * ran and keeps the baseline's other entries. Any standard JMH option can be passed alongside:
+ *
+ *   mvn -Pjmh test-compile exec:exec -Djmh.args="[--baseline FILE] [--tolerance 0.10] [--update-baseline] [JMH options]"
+ *
+ * Throughput depends on the machine, so the baseline should be recorded with
+ * --update-baseline on the machine that compares against it; allocation per
+ * operation is largely machine-independent.
+ */
+public class BenchmarkRunner {
+
+    static final String RESULT_FILE = "target/jmh-result.json";
+    static final String DEFAULT_BASELINE = "src/jmh/baseline.json";
+    static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        String baseline = DEFAULT_BASELINE;
+        double tolerance = 0.10;
+        boolean updateBaseline = false;
+        List<String> jmhArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--baseline":
+                    baseline = args[++i];
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(args[++i]);
+                    break;
+                case "--update-baseline":
+                    updateBaseline = true;
+                    break;
+                default:
+                    jmhArgs.add(args[i]);
+            }
+        }
+
+        new File(RESULT_FILE).getParentFile().mkdirs();
+        new Runner(new OptionsBuilder()
+            .parent(new CommandLineOptions(jmhArgs.toArray(new String[0])))
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result(RESULT_FILE)
+            .build()
+        ).run();
+
+        Path baselinePath = Path.of(baseline);
+        if (updateBaseline) {
+            Map<String, JsonNode> results = Files.exists(baselinePath) ? read(baselinePath) : new LinkedHashMap<>();
+            results.putAll(read(Path.of(RESULT_FILE)));
+            // Indented like JMH's own result files, so re-recorded entries diff cleanly.
+            DefaultIndenter indenter = new DefaultIndenter("    ", DefaultIndenter.SYSTEM_LINEFEED_INSTANCE.getEol());
+            new ObjectMapper()
+                .writer(new DefaultPrettyPrinter().withArrayIndenter(indenter).withObjectIndenter(indenter))
+                .writeValue(baselinePath.toFile(), results.values());
+            System.out.println("Baseline written to " + baselinePath);
+            return;
+        }
+
+        if (!Files.exists(baselinePath)) {
+            System.out.println("No baseline at " + baselinePath + "; run with --update-baseline to record one");
+            return;
+        }
+
+        List<String> regressions = compare(read(baselinePath), read(Path.of(RESULT_FILE)), tolerance);
+        if (regressions.isEmpty()) {
+            System.out.println("No regressions against " + baselinePath);
+            return;
+        }
+
+        System.out.println("Regressions or missing baselines against " + baselinePath + ":");
+        regressions.forEach(regression -> System.out.println("  " + regression));
+        System.exit(1);
+    }
+
+    /**
+     * Compare every benchmark of this run with its baseline.
+     *
+     * @param baseline the baseline results, keyed by benchmark and parameters
+     * @param current the results of this run, keyed the same way
+     * @param tolerance the allowed relative change, e.g. 0.10 for 10%
+     * @return a description of each regression or missing baseline, empty if there were none
+     */
+    static List<String> compare(Map<String, JsonNode> baseline, Map<String, JsonNode> current, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        current.forEach((key, result) -> {
+            JsonNode expected = baseline.get(key);
+            if (expected == null) {
+                regressions.add(key + ": no baseline; record one with --update-baseline");
+                return;
+            }
+
+            double baselineScore = expected.path("primaryMetric").path("score").asDouble();
+            double score = result.path("primaryMetric").path("score").asDouble();
+            // Throughput regresses when it falls; average and sampled time when they rise.
+            boolean throughput = "thrpt".equals(result.path("mode").asText());
+            if (throughput ? score < baselineScore * (1 - tolerance) : score > baselineScore * (1 + tolerance)) {
+                regressions.add(String.format("%s: %s %.1f -> %.1f %s", key, throughput ? "throughput" : "time",
+                    baselineScore, score, result.path("primaryMetric").path("scoreUnit").asText()));
+            }
+
+            JsonNode baselineAllocation = allocation(expected);
+            JsonNode allocation = allocation(result);
+            if (baselineAllocation != null && allocation != null
+                && allocation.path("score").asDouble() > baselineAllocation.path("score").asDouble() * (1 + tolerance)) {
+                regressions.add(String.format("%s: allocation %.0f -> %.0f %s",
+                    key, baselineAllocation.path("score").asDouble(), allocation.path("score").asDouble(),
+                    allocation.path("scoreUnit").asText()));
+            }
+        });
+        return regressions;
+    }
+
+    /**
+     * Read a JMH JSON result file.
+     *
+     * @return the results keyed by benchmark name and parameters
+     */
+    static Map<String, JsonNode> read(Path path) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(path.toFile())) {
+            Map<String, String> params = new TreeMap<>();
+            result.path("params").fields().forEachRemaining(param -> params.put(param.getKey(), param.getValue().asText()));
+            results.put(result.path("benchmark").asText() + params, result);
+        }
+        return results;
+    }
+
+    /**
+     * The GC profiler's bytes-per-operation metric; JMH prefixes secondary metric names with a "·".
+     */
+    private static JsonNode allocation(JsonNode result) {
+        JsonNode metrics = result.path("secondaryMetrics");
+        JsonNode metric = metrics.get(ALLOCATION_METRIC);
+        return metric != null ? metric : metrics.get("·" + ALLOCATION_METRIC);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.SocialMediaApp;
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+
+/**
+ * Time and allocation per read of {@code rows} messages, as managed entities and
+ * as the constructor projections the listings use, to show what skipping entity
+ * hydration saves on large results. The entity read is the query the listings ran
+ * before they moved to projections: its own persistence context, with a snapshot
+ * of every row for dirty checking. Run through {@link BenchmarkRunner}, whose GC
+ * profiler reports the allocation per read, e.g.
+ *
+ *   mvn -Pjmh test-compile exec:exec -Djmh.args="ReadPathBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ReadPathBenchmark {
+
+    // Seeded ids start above the test fixtures in data.sql (9996-9999).
+    static final int FIRST_ID = 10_000;
+    static final long FIRST_EPOCH = 1_669_947_792L;
+    static final int SEED_BATCH_SIZE = 10_000;
+
+    @Param("100000")
+    public int rows;
+
+    private ConfigurableApplicationContext app;
+    private EntityManager entityManager;
+    private MessageRepository messageRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SpringApplication application = new SpringApplication(SocialMediaApp.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        app = application.run("--logging.level.root=WARN", "--spring.main.banner-mode=off");
+        entityManager = app.getBean(EntityManager.class);
+        messageRepository = app.getBean(MessageRepository.class);
+        seed(app.getBean(JdbcTemplate.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SpringApplication.exit(app);
+    }
+
+    @Benchmark
+    public List<Message> entities() {
+        return entityManager.createQuery("FROM Message ORDER BY message_id", Message.class)
+            .setMaxResults(rows)
+            .getResultList();
+    }
+
+    @Benchmark
+    public List<Message> projections() {
+        return messageRepository.findFirstPage(PageRequest.of(0, rows));
+    }
+
+    /**
+     * Insert the messages with JDBC batches, all posted by one of the seeded accounts.
+     */
+    private void seed(JdbcTemplate jdbcTemplate) {
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Object[] {FIRST_ID + i, 9999, "message " + i, FIRST_EPOCH + i});
+            if (batch.size() == SEED_BATCH_SIZE || i == rows - 1) {
+                jdbcTemplate.batchUpdate(
+                    "INSERT INTO message (message_id, posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?, ?)", batch
+                );
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.SocialMediaApp;
+import com.example.entity.Message;
+import com.example.exception.SearchIndexUnavailableException;
+import com.example.service.MessagePage;
+import com.example.service.MessageSearchIndex;
+import com.example.service.MessageService;
+
+/**
+ * Latency of full-text search against corpus size. Each trial boots the application
+ * context (no web server) and seeds {@code messages} rows of {@code wordsPerMessage}
+ * words drawn from a vocabulary of {@code vocabulary} words. Word frequencies are
+ * skewed like natural text: word {@code vocabulary * u^3} for uniform u, so the
+ * lowest-numbered words appear in most messages and the highest in very few.
+ *
+ * Run through {@link BenchmarkRunner}, e.g.
+ *
+ *   mvn -Pjmh test-compile exec:exec -Djmh.args="SearchBenchmark -p messages=1000000 -jvmArgsAppend -Xmx8g"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    // Seeded ids start above the test fixtures in data.sql (9996-9999).
+    static final int FIRST_ID = 10_000;
+    static final long FIRST_EPOCH = 1_669_947_792L;
+    static final int SEED_BATCH_SIZE = 10_000;
+
+    @Param({"1000", "100000"})
+    public int messages;
+
+    @Param("10000")
+    public int vocabulary;
+
+    @Param("8")
+    public int wordsPerMessage;
+
+    private ConfigurableApplicationContext app;
+    private MessageService messageService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SpringApplication application = new SpringApplication(SocialMediaApp.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        app = application.run("--logging.level.root=WARN", "--spring.main.banner-mode=off");
+        messageService = app.getBean(MessageService.class);
+        seed(app.getBean(JdbcTemplate.class), app.getBean(MessageSearchIndex.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * A word from the head of the distribution, matching a large share of the corpus.
+     */
+    @Benchmark
+    public Optional<MessagePage> searchCommonTerm() throws SearchIndexUnavailableException {
+        return messageService.searchMessages(word(ThreadLocalRandom.current().nextInt(10)), null, null);
+    }
+
+    /**
+     * A word from the tail of the distribution, matching a handful of messages.
+     */
+    @Benchmark
+    public Optional<MessagePage> searchRareTerm() throws SearchIndexUnavailableException {
+        int index = vocabulary - 1 - ThreadLocalRandom.current().nextInt(vocabulary / 10);
+        return messageService.searchMessages(word(index), null, null);
+    }
+
+    /**
+     * Two words drawn like the corpus, which must both match.
+     */
+    @Benchmark
+    public Optional<MessagePage> searchTwoTerms() throws SearchIndexUnavailableException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return messageService.searchMessages(
+            word(skewedWord(random.nextDouble())) + " " + word(skewedWord(random.nextDouble())), null, null
+        );
+    }
+
+    /**
+     * Insert the messages with JDBC batches and add them to the search index, which
+     * loaded before seeding. Outside a transaction the index applies them at once.
+     */
+    private void seed(JdbcTemplate jdbcTemplate, MessageSearchIndex searchIndex) {
+        List<Object[]> rows = new ArrayList<>(SEED_BATCH_SIZE);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < messages; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < wordsPerMessage; w++) {
+                text.append(w == 0 ? "" : " ").append(word(skewedWord(random.nextDouble())));
+            }
+
+            Message message = new Message(FIRST_ID + i, 9999, text.toString(), FIRST_EPOCH + i);
+            searchIndex.add(message);
+            rows.add(new Object[] {message.getMessage_id(), message.getPosted_by(), message.getMessage_text(),
+                message.getTime_posted_epoch()});
+            if (rows.size() == SEED_BATCH_SIZE || i == messages - 1) {
+                jdbcTemplate.batchUpdate(
+                    "INSERT INTO message (message_id, posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?, ?)", rows
+                );
+                rows.clear();
+            }
+        }
+    }
+
+    private int skewedWord(double uniform) {
+        return (int) (vocabulary * Math.pow(uniform, 3));
+    }
+
+    private static String word(int index) {
+        return "w" + index;
+    }
+}
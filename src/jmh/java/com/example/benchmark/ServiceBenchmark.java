@@ -0,0 +1,188 @@
+package com.example.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.SocialMediaApp;
+import com.example.entity.Account;
+import com.example.entity.Message;
+import com.example.service.AccountIdIndex;
+import com.example.service.AccountService;
+import com.example.service.MessageCursor;
+import com.example.service.MessagePage;
+import com.example.service.MessageService;
+import com.example.service.UsernameBloomFilter;
+
+/**
+ * Throughput of the service hot paths against the JPA layer on H2, without HTTP
+ * in the way. Each trial boots the application context (no web server) and seeds
+ * {@code messages} rows spread over {@code messages / postsPerAccount} accounts.
+ * Posts per account are skewed: the account of each message is drawn as
+ * {@code accounts * u^skew} for uniform u, so with the default skew of 3 the
+ * busiest 1% of accounts hold about a fifth of all messages. Reads draw their
+ * account from the same distribution, so hot timelines are read more often.
+ * Messages are posted one second apart, so a day-long time range covers up to
+ * 86400 of them.
+ *
+ * Run through {@link BenchmarkRunner}; larger datasets need a bigger fork heap, e.g.
+ *
+ *   mvn -Pjmh test-compile exec:exec -Djmh.args="-p messages=10000000 -jvmArgsAppend -Xmx8g"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    // Seeded ids start above the test fixtures in data.sql (9996-9999).
+    static final int FIRST_ID = 10_000;
+    static final long FIRST_EPOCH = 1_669_947_792L;
+    static final int SEED_BATCH_SIZE = 10_000;
+    static final long DAY = 86_400L;
+
+    @Param({"1000", "100000"})
+    public int messages;
+
+    @Param("100")
+    public int postsPerAccount;
+
+    @Param("3")
+    public double skew;
+
+    private ConfigurableApplicationContext app;
+    private MessageService messageService;
+    private AccountService accountService;
+    private int accounts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SpringApplication application = new SpringApplication(SocialMediaApp.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        app = application.run("--logging.level.root=WARN", "--spring.main.banner-mode=off");
+        messageService = app.getBean(MessageService.class);
+        accountService = app.getBean(AccountService.class);
+        accounts = Math.max(1, messages / postsPerAccount);
+        seed(app.getBean(JdbcTemplate.class), app.getBean(AccountIdIndex.class), app.getBean(UsernameBloomFilter.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SpringApplication.exit(app);
+    }
+
+    @Benchmark
+    public Optional<Message> createMessage() {
+        return messageService.createMessage(new Message(randomAccountId(), "benchmark message", FIRST_EPOCH + messages));
+    }
+
+    @Benchmark
+    public Optional<MessagePage> getMessagesByAccountId() {
+        return messageService.getMessagesByAccountId(randomAccountId(), null, null);
+    }
+
+    @Benchmark
+    public Optional<MessagePage> getAllMessagesFirstPage() {
+        return messageService.getAllMessages(null, null);
+    }
+
+    @Benchmark
+    public Optional<MessagePage> getAllMessagesAfterCursor() {
+        int messageId = FIRST_ID + ThreadLocalRandom.current().nextInt(messages);
+        return messageService.getAllMessages(null, new MessageCursor(null, messageId).encode());
+    }
+
+    @Benchmark
+    public Optional<MessagePage> getAllMessagesInDay() {
+        long since = randomDay();
+        return messageService.getAllMessages(since, since + DAY, null, null);
+    }
+
+    @Benchmark
+    public Optional<MessagePage> getMessagesByAccountIdInDay() {
+        long since = randomDay();
+        return messageService.getMessagesByAccountId(randomAccountId(), since, since + DAY, null, null);
+    }
+
+    @Benchmark
+    public Optional<Account> authenticate() {
+        int accountId = FIRST_ID + ThreadLocalRandom.current().nextInt(accounts);
+        return accountService.authenticate(new Account(username(accountId), "password"));
+    }
+
+    /**
+     * Insert the accounts and messages with JDBC batches, register the accounts with
+     * the in-memory indexes (which loaded before seeding), and move the identity
+     * and message sequence past the seeded ids.
+     */
+    private void seed(JdbcTemplate jdbcTemplate, AccountIdIndex accountIdIndex, UsernameBloomFilter usernameFilter) {
+        List<Object[]> rows = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < accounts; i++) {
+            int accountId = FIRST_ID + i;
+            rows.add(new Object[] {accountId, username(accountId), "password"});
+            accountIdIndex.add(accountId);
+            usernameFilter.put(username(accountId));
+            if (rows.size() == SEED_BATCH_SIZE || i == accounts - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO account (account_id, username, password) VALUES (?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < messages; i++) {
+            rows.add(new Object[] {FIRST_ID + i, skewedAccountId(random.nextDouble()), "message " + i, FIRST_EPOCH + i});
+            if (rows.size() == SEED_BATCH_SIZE || i == messages - 1) {
+                jdbcTemplate.batchUpdate(
+                    "INSERT INTO message (message_id, posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?, ?)", rows
+                );
+                rows.clear();
+            }
+        }
+
+        jdbcTemplate.execute("ALTER TABLE account ALTER COLUMN account_id RESTART WITH " + (FIRST_ID + accounts));
+        // Hibernate's pooled optimizer hands out the 50 ids below the value it reads.
+        jdbcTemplate.execute("ALTER SEQUENCE message_seq RESTART WITH " + (FIRST_ID + messages + 50));
+    }
+
+    /**
+     * @return the start of a day-long window that lies within the seeded messages
+     */
+    private long randomDay() {
+        return FIRST_EPOCH + ThreadLocalRandom.current().nextLong(Math.max(1, messages - DAY));
+    }
+
+    private int randomAccountId() {
+        return skewedAccountId(ThreadLocalRandom.current().nextDouble());
+    }
+
+    private int skewedAccountId(double uniform) {
+        return FIRST_ID + (int) (accounts * Math.pow(uniform, skew));
+    }
+
+    private static String username(int accountId) {
+        return "user" + accountId;
+    }
+}
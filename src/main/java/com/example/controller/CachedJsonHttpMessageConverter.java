@@ -0,0 +1,52 @@
+package com.example.controller;
+
+import java.io.IOException;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import com.example.service.CachedJson;
+
+/**
+ * Writes pre-serialized JSON bodies straight to the response stream, with their
+ * length, instead of handing them to Jackson. Picked up by Spring Boot ahead of
+ * the default converters. Write-only.
+ */
+@Component
+@Profile("!reactive")
+public class CachedJsonHttpMessageConverter extends AbstractHttpMessageConverter<CachedJson> {
+
+    public CachedJsonHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return CachedJson.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected CachedJson readInternal(Class<? extends CachedJson> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Cached JSON is write-only", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(CachedJson json, MediaType contentType) {
+        return (long) json.getLength();
+    }
+
+    @Override
+    protected void writeInternal(CachedJson json, HttpOutputMessage outputMessage) throws IOException {
+        json.writeTo(outputMessage.getBody());
+    }
+}
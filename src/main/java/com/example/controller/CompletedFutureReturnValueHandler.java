@@ -0,0 +1,112 @@
+package com.example.controller;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandlerComposite;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+/**
+ * Writes the response of a handler returning CompletableFuture&lt;ResponseEntity&gt;
+ * on the request thread when the future is already complete, as it always is with
+ * the JDBC executor's async mode off, instead of going through an async dispatch.
+ * Futures still running are handed to Spring MVC's async handling as before.
+ */
+@Component
+@Profile("!reactive")
+public class CompletedFutureReturnValueHandler implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof RequestMappingHandlerAdapter) {
+            RequestMappingHandlerAdapter adapter = (RequestMappingHandlerAdapter) bean;
+            List<HandlerMethodReturnValueHandler> handlers = new ArrayList<>(adapter.getReturnValueHandlers());
+            handlers.add(0, new Handler(new HandlerMethodReturnValueHandlerComposite().addHandlers(handlers)));
+            adapter.setReturnValueHandlers(handlers);
+        }
+        return bean;
+    }
+
+    private static class Handler implements HandlerMethodReturnValueHandler {
+
+        private final HandlerMethodReturnValueHandlerComposite delegate;
+
+        private Handler(HandlerMethodReturnValueHandlerComposite delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean supportsReturnType(MethodParameter returnType) {
+            return CompletableFuture.class.isAssignableFrom(returnType.getParameterType())
+                && ResponseEntity.class.isAssignableFrom(ResolvableType.forMethodParameter(returnType).getGeneric().toClass());
+        }
+
+        @Override
+        public void handleReturnValue(Object returnValue, MethodParameter returnType, ModelAndViewContainer mavContainer,
+            NativeWebRequest webRequest) throws Exception {
+            CompletableFuture<?> future = (CompletableFuture<?>) returnValue;
+            if (future == null || !future.isDone()) {
+                delegate.handleReturnValue(returnValue, returnType, mavContainer, webRequest);
+                return;
+            }
+
+            Object result;
+            try {
+                result = future.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof Exception) {
+                    throw (Exception) ex.getCause();
+                }
+                throw ex;
+            }
+            delegate.handleReturnValue(result, new ResultParameter(returnType), mavContainer, webRequest);
+        }
+    }
+
+    /**
+     * The handler method's return type with the CompletableFuture taken off, so the
+     * ResponseEntity is handled, and its body converted, as if returned directly.
+     */
+    private static class ResultParameter extends MethodParameter {
+
+        private final Type resultType;
+
+        private ResultParameter(MethodParameter returnType) {
+            super(returnType);
+            this.resultType = ((ParameterizedType) returnType.getGenericParameterType()).getActualTypeArguments()[0];
+        }
+
+        private ResultParameter(ResultParameter original) {
+            super(original);
+            this.resultType = original.resultType;
+        }
+
+        @Override
+        public Class<?> getParameterType() {
+            return ResolvableType.forType(resultType).toClass();
+        }
+
+        @Override
+        public Type getGenericParameterType() {
+            return resultType;
+        }
+
+        @Override
+        public ResultParameter clone() {
+            return new ResultParameter(this);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.controller;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.entity.Account;
+import com.example.entity.Message;
+import com.example.exception.AccountAlreadyExistsException;
+import com.example.exception.AccountException;
+import com.example.service.MessageBatchResult;
+import com.example.service.MessagePage;
+import com.example.service.ReactiveAccountService;
+import com.example.service.ReactiveMessageService;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The same REST surface as SocialMediaController, on WebFlux for the reactive profile.
+ */
+@Controller
+@Profile("reactive")
+public class ReactiveSocialMediaController {
+
+    private final Logger logger = LoggerFactory.getLogger(ReactiveSocialMediaController.class);
+
+    private final ReactiveAccountService accountService;
+    private final ReactiveMessageService messageService;
+
+    public ReactiveSocialMediaController(ReactiveAccountService accountService, ReactiveMessageService messageService) {
+        this.accountService = accountService;
+        this.messageService = messageService;
+    }
+
+    /**
+     * POST /register
+     * Attempts to register a user in the database.
+     *
+     * @param account the account to register
+     * @return
+     */
+    @PostMapping("/register")
+    @ResponseBody
+    public Mono<ResponseEntity<Account>> register(@RequestBody Account account) {
+        return accountService.createAccount(account)
+            .map(createdAccount -> ResponseEntity.status(HttpStatus.OK).body(createdAccount))
+            .onErrorResume(AccountException.class, ex -> {
+                logger.error("/register exception: body: {}, message: {}", account, ex.getMessage());
+
+                if (ex instanceof AccountAlreadyExistsException) {
+                    return Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).body(null));
+                }
+
+                return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null));
+            });
+    }
+
+    /**
+     * POST /login
+     * Attempts to authenticate a user in the database
+     *
+     * @param account the account to authenticate
+     * @return
+     */
+    @PostMapping("/login")
+    @ResponseBody
+    public Mono<ResponseEntity<Account>> login(@RequestBody Account account) {
+        return accountService.authenticate(account)
+            .map(authenticatedAccount -> ResponseEntity.status(HttpStatus.OK).body(authenticatedAccount))
+            .defaultIfEmpty(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(null));
+    }
+
+    /**
+     * POST /messages
+     * Attempts to create a message in the database
+     *
+     * @param message the message to create
+     * @return
+     */
+    @PostMapping("/messages")
+    @ResponseBody
+    public Mono<ResponseEntity<Message>> createMessage(@RequestBody Message message) {
+        return messageService.createMessage(message)
+            .map(createdMessage -> ResponseEntity.status(HttpStatus.OK).body(createdMessage))
+            .defaultIfEmpty(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null));
+    }
+
+    /**
+     * POST /messages/batch
+     * Attempts to create many messages in the database at once
+     *
+     * @param messages the messages to create
+     * @return one result per message, in order, each with its own status
+     */
+    @PostMapping("/messages/batch")
+    @ResponseBody
+    public Mono<ResponseEntity<List<MessageBatchResult>>> createMessages(@RequestBody List<Message> messages) {
+        return messageService.createMessages(messages)
+            .map(results -> ResponseEntity.status(HttpStatus.OK).body(results))
+            .defaultIfEmpty(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null));
+    }
+
+    /**
+     * GET /messages
+     * Retrieves a page of the messages in the database, by message_id, or newest first
+     * when limited to a time range. The cursor for the next page, if any, is returned
+     * in the X-Next-Cursor header.
+     *
+     * @param since the earliest time_posted_epoch to include
+     * @param until the time_posted_epoch to stop before
+     * @param limit the maximum number of messages to return
+     * @param after the cursor of the previous page
+     * @return
+     */
+    @GetMapping("/messages")
+    @ResponseBody
+    public Mono<ResponseEntity<List<Message>>> getAllMessages(
+        @RequestParam(required = false) Long since,
+        @RequestParam(required = false) Long until,
+        @RequestParam(required = false) Integer limit,
+        @RequestParam(required = false) String after
+    ) {
+        return pageResponse(messageService.getAllMessages(since, until, limit, after));
+    }
+
+    /**
+     * GET /messages (Accept: application/x-ndjson)
+     * Streams every message in the database as newline-delimited JSON. Time ranges
+     * are only served as pages, so since and until are rejected with 400.
+     *
+     * @param since must be absent
+     * @param until must be absent
+     * @return
+     */
+    @GetMapping(value = "/messages", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseBody
+    public Flux<Message> streamAllMessages(
+        @RequestParam(required = false) Long since,
+        @RequestParam(required = false) Long until
+    ) {
+        rejectTimeRange(since, until);
+        return messageService.streamAllMessages();
+    }
+
+    /**
+     * GET /messages/{message_id}
+     * Retrieve a message by the message_id
+     *
+     * @param message_id the message_id to look for
+     * @return
+     */
+    @GetMapping("/messages/{message_id}")
+    @ResponseBody
+    public Mono<ResponseEntity<Message>> getMessageById(@PathVariable Integer message_id) {
+        return messageService.getMessageById(message_id)
+            .map(message -> ResponseEntity.status(HttpStatus.OK).body(message))
+            .defaultIfEmpty(ResponseEntity.status(HttpStatus.OK).body(null));
+    }
+
+    /**
+     * DELETE /messages/{message_id}
+     * Delete a message by the message_id
+     *
+     * @param message_id the message_id to delete
+     * @return
+     */
+    @DeleteMapping("/messages/{message_id}")
+    @ResponseBody
+    public Mono<ResponseEntity<Integer>> deleteMessageById(@PathVariable Integer message_id) {
+        return messageService.deleteMessageById(message_id)
+            .map(deleted -> ResponseEntity.status(HttpStatus.OK).body(deleted ? 1 : null));
+    }
+
+    /**
+     * PATCH /messages/{message_id}
+     * Update a message_text by the message_id
+     *
+     * @param message the body containing the message_text
+     * @param message_id the id of the message to update
+     * @return
+     */
+    @PatchMapping("/messages/{message_id}")
+    @ResponseBody
+    public Mono<ResponseEntity<Integer>> patchMessageById(@RequestBody Message message, @PathVariable Integer message_id) {
+        return messageService.updateMessageById(message.getMessage_text(), message_id)
+            .map(updated -> updated
+                ? ResponseEntity.status(HttpStatus.OK).body(1)
+                : ResponseEntity.status(HttpStatus.BAD_REQUEST).body((Integer) null));
+    }
+
+    /**
+     * GET /accounts/{account_id}/messages
+     * Get a page of the messages associated with a provided account_id, newest first,
+     * optionally limited to a time range. The cursor for the next page, if any, is
+     * returned in the X-Next-Cursor header.
+     *
+     * @param account_id the id of the account to look for
+     * @param since the earliest time_posted_epoch to include
+     * @param until the time_posted_epoch to stop before
+     * @param limit the maximum number of messages to return
+     * @param after the cursor of the previous page
+     * @return
+     */
+    @GetMapping("/accounts/{account_id}/messages")
+    @ResponseBody
+    public Mono<ResponseEntity<List<Message>>> getMessagesByAccountId(
+        @PathVariable Integer account_id,
+        @RequestParam(required = false) Long since,
+        @RequestParam(required = false) Long until,
+        @RequestParam(required = false) Integer limit,
+        @RequestParam(required = false) String after
+    ) {
+        return pageResponse(messageService.getMessagesByAccountId(account_id, since, until, limit, after));
+    }
+
+    /**
+     * GET /accounts/{account_id}/messages (Accept: application/x-ndjson)
+     * Streams every message associated with a provided account_id as newline-delimited
+     * JSON. Time ranges are only served as pages, so since and until are rejected with 400.
+     *
+     * @param account_id the id of the account to look for
+     * @param since must be absent
+     * @param until must be absent
+     * @return
+     */
+    @GetMapping(value = "/accounts/{account_id}/messages", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseBody
+    public Flux<Message> streamMessagesByAccountId(
+        @PathVariable Integer account_id,
+        @RequestParam(required = false) Long since,
+        @RequestParam(required = false) Long until
+    ) {
+        rejectTimeRange(since, until);
+        return messageService.streamMessagesByAccountId(account_id);
+    }
+
+    /**
+     * Streams carry no cursor to resume from, so they are not offered for time ranges.
+     */
+    private static void rejectTimeRange(Long since, Long until) {
+        if (since != null || until != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Time ranges are only served as pages");
+        }
+    }
+
+    /**
+     * Build the response for a keyset page of messages.
+     *
+     * @param page the page, empty if the limit or cursor was rejected
+     * @return
+     */
+    private Mono<ResponseEntity<List<Message>>> pageResponse(Mono<MessagePage> page) {
+        return page
+            .map(messagePage -> {
+                ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+                if (messagePage.getNextCursor() != null) {
+                    response.header(SocialMediaController.NEXT_CURSOR_HEADER, messagePage.getNextCursor());
+                }
+
+                return response.body(messagePage.getMessages());
+            })
+            .defaultIfEmpty(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null));
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.controller;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Serve the reactive profile from Netty. Tomcat is on the classpath for the servlet
+ * stack and Spring Boot would otherwise prefer it for a reactive application too.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveWebConfiguration {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
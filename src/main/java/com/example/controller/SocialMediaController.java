@@ -1,12 +1,26 @@
 package com.example.controller;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -15,27 +29,55 @@ import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
 
 import com.example.entity.Account;
 import com.example.entity.Message;
 import com.example.exception.AccountAlreadyExistsException;
 import com.example.exception.AccountException;
+import com.example.exception.FeedUnavailableException;
+import com.example.exception.MessageQueueFullException;
+import com.example.exception.SearchIndexUnavailableException;
+import com.example.repository.AccountStats;
 import com.example.service.AccountService;
+import com.example.service.CachedJson;
+import com.example.service.FeedService;
+import com.example.service.JdbcExecutor;
+import com.example.service.MessageBatchResult;
+import com.example.service.MessagePage;
 import com.example.service.MessageService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 @Controller
+@Profile("!reactive")
 public class SocialMediaController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final Logger logger = LoggerFactory.getLogger(SocialMediaController.class);
 
     private final AccountService accountService;
     private final MessageService messageService;
+    private final FeedService feedService;
+    private final JdbcExecutor jdbcExecutor;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public SocialMediaController(AccountService accountService, MessageService messageService) {
+    public SocialMediaController(
+        AccountService accountService,
+        MessageService messageService,
+        FeedService feedService,
+        JdbcExecutor jdbcExecutor,
+        ObjectMapper objectMapper
+    ) {
         this.accountService = accountService;
         this.messageService = messageService;
+        this.feedService = feedService;
+        this.jdbcExecutor = jdbcExecutor;
+        this.objectMapper = objectMapper;
     }
     
     /**
@@ -47,20 +89,22 @@ public class SocialMediaController {
      */
     @PostMapping("/register")
     @ResponseBody
-    public ResponseEntity<Account> register(@RequestBody Account account) {
-        try {
-            accountService.createAccount(account);
-        } catch (AccountException ex) {
-            logger.error("/register exception: body: {}, message: {}", account, ex.getMessage());
+    public CompletableFuture<ResponseEntity<Account>> register(@RequestBody Account account) {
+        return async("register", () -> {
+            try {
+                accountService.createAccount(account);
+            } catch (AccountException ex) {
+                logger.error("/register exception: body: {}, message: {}", account, ex.getMessage());
 
-            if (ex instanceof AccountAlreadyExistsException) {
-                return ResponseEntity.status(HttpStatus.CONFLICT).body(null);
-            }
+                if (ex instanceof AccountAlreadyExistsException) {
+                    return ResponseEntity.status(HttpStatus.CONFLICT).body(null);
+                }
 
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
-        }
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+            }
 
-        return ResponseEntity.status(200).body(account);
+            return ResponseEntity.status(200).body(account);
+        });
     }
 
     /**
@@ -72,63 +116,155 @@ public class SocialMediaController {
      */
     @PostMapping("/login")
     @ResponseBody
-    public ResponseEntity<Account> login(@RequestBody Account account) {
-        Optional<Account> authenticatedAccount = accountService.authenticate(account);
-        if (authenticatedAccount.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(null);
-        }
+    public CompletableFuture<ResponseEntity<Account>> login(@RequestBody Account account) {
+        return async("login", () -> {
+            Optional<Account> authenticatedAccount = accountService.authenticate(account);
+            if (authenticatedAccount.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(null);
+            }
 
-        return ResponseEntity.status(HttpStatus.OK).body(authenticatedAccount.get());
+            return ResponseEntity.status(HttpStatus.OK).body(authenticatedAccount.get());
+        });
     }
 
     /**
      * POST /messages
-     * Attempts to create a message in the database
+     * Attempts to create a message in the database. With write-behind ingestion
+     * enabled the response is sent once the message's group commit finishes, and a
+     * full ingestion queue is answered with 503 and a Retry-After header.
      * 
      * @param message the message to create
      * @return
      */
     @PostMapping("/messages")
     @ResponseBody
-    public ResponseEntity<Message> createMessage(@RequestBody Message message) {
-        Optional<Message> createdMessage = messageService.createMessage(message);
-        if (createdMessage.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
-        }
+    public CompletableFuture<ResponseEntity<Message>> createMessage(@RequestBody Message message) {
+        return jdbcExecutor.call("messages.create", () -> messageService.submitMessage(message))
+            .thenCompose(createdMessage -> createdMessage)
+            .<ResponseEntity<Message>>thenApply(createdMessage -> {
+                if (createdMessage.isEmpty()) {
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+                }
+
+                return ResponseEntity.status(HttpStatus.OK).body(createdMessage.get());
+            })
+            .exceptionally(ex -> unavailable("messages.create", ex));
+    }
+
+    /**
+     * POST /messages/batch
+     * Attempts to create many messages in the database at once
+     * 
+     * @param messages the messages to create
+     * @return one result per message, in order, each with its own status
+     */
+    @PostMapping("/messages/batch")
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<List<MessageBatchResult>>> createMessages(@RequestBody List<Message> messages) {
+        return async("messages.batch", () -> {
+            Optional<List<MessageBatchResult>> results = messageService.createMessages(messages);
+            if (results.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+            }
 
-        return ResponseEntity.status(HttpStatus.OK).body(createdMessage.get());
+            return ResponseEntity.status(HttpStatus.OK).body(results.get());
+        });
     }
 
     /**
      * GET /messages
-     * Retrieves all the messages in the database
+     * Retrieves a page of the messages in the database, by message_id, or newest first
+     * when limited to a time range. The cursor for the next page, if any, is returned
+     * in the X-Next-Cursor header.
      * 
+     * @param since the earliest time_posted_epoch to include
+     * @param until the time_posted_epoch to stop before
+     * @param limit the maximum number of messages to return
+     * @param after the cursor of the previous page
      * @return 
      */
     @GetMapping("/messages")
     @ResponseBody
-    public ResponseEntity<List<Message>> getAllMessages() {
-        return ResponseEntity.status(HttpStatus.OK).body(messageService.getAllMessages());
+    public CompletableFuture<ResponseEntity<List<Message>>> getAllMessages(
+        @RequestParam(required = false) Long since,
+        @RequestParam(required = false) Long until,
+        @RequestParam(required = false) Integer limit,
+        @RequestParam(required = false) String after
+    ) {
+        return async("messages.list", () -> pageResponse(messageService.getAllMessages(since, until, limit, after)));
+    }
+
+    /**
+     * GET /messages (Accept: application/x-ndjson)
+     * Streams every message in the database as newline-delimited JSON. Time ranges
+     * are only served as pages, so since and until are rejected with 400.
+     * 
+     * @param since must be absent
+     * @param until must be absent
+     * @param response the response to write the messages to
+     * @throws IOException if the client connection fails
+     */
+    @GetMapping(value = "/messages", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void streamAllMessages(
+        @RequestParam(required = false) Long since,
+        @RequestParam(required = false) Long until,
+        HttpServletResponse response
+    ) throws IOException {
+        rejectTimeRange(since, until);
+        streamResponse(response, consumer -> messageService.streamAllMessages(consumer));
+    }
+
+    /**
+     * GET /messages/search?q=...
+     * Search message text for messages containing every term of the query, best match
+     * first. The cursor for the next page, if any, is returned in the X-Next-Cursor
+     * header; 503 with Retry-After while the search index is loading at startup.
+     * 
+     * @param q the search terms
+     * @param limit the maximum number of messages to return
+     * @param after the cursor of the previous page
+     * @return 
+     */
+    @GetMapping("/messages/search")
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<List<Message>>> searchMessages(
+        @RequestParam(required = false) String q,
+        @RequestParam(required = false) Integer limit,
+        @RequestParam(required = false) String after
+    ) {
+        return async("messages.search", () -> pageResponse(messageService.searchMessages(q, limit, after)));
     }
 
     /**
      * GET /messages/{message_id}
-     * Retrieve a message by the message_id
+     * Retrieve a message by the message_id. The body is the message's cached JSON,
+     * written without going through Jackson. The ETag is the message's id and version
+     * with the startup time, like the account page ETags, and a matching
+     * If-None-Match gets 304; when the message is cached, without a query.
      * 
      * @param message_id the message_id to look for
+     * @param ifNoneMatch the ETags the client already has
      * @return
      */
     @GetMapping("/messages/{message_id}")
     @ResponseBody
-    public ResponseEntity<Message> getMessageById(@PathVariable Integer message_id) {
-        Message message = null;
-        
-        Optional<Message> existingMessage = messageService.getMessageById(message_id);
-        if (existingMessage.isPresent()) {
-            message = existingMessage.get();
-        }
+    public CompletableFuture<ResponseEntity<CachedJson>> getMessageById(
+        @PathVariable Integer message_id,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        return async("messages.get", () -> {
+            Optional<CachedJson> existingMessage = messageService.getMessageJsonById(message_id);
+            if (existingMessage.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.OK).body(null);
+            }
+
+            String etag = etag(existingMessage.get().getVersion());
+            if (notModified(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
 
-        return ResponseEntity.status(HttpStatus.OK).body(message);
+            return ResponseEntity.status(HttpStatus.OK).eTag(etag).body(existingMessage.get());
+        });
     }
 
     /**
@@ -140,10 +276,10 @@ public class SocialMediaController {
      */
     @DeleteMapping("/messages/{message_id}")
     @ResponseBody
-    public ResponseEntity<Integer> deleteMessageById(@PathVariable Integer message_id) {
-        return ResponseEntity.status(HttpStatus.OK).body(
+    public CompletableFuture<ResponseEntity<Integer>> deleteMessageById(@PathVariable Integer message_id) {
+        return async("messages.delete", () -> ResponseEntity.status(HttpStatus.OK).body(
             messageService.deleteMessageById(message_id) ? 1 : null
-        );
+        ));
     }
 
     /**
@@ -156,25 +292,275 @@ public class SocialMediaController {
      */
     @PatchMapping("/messages/{message_id}")
     @ResponseBody
-    public ResponseEntity<Integer> patchMessageById(@RequestBody Message message, @PathVariable Integer message_id) {
-        Optional<Message> updatedMessage = messageService.updateMessageById(message.getMessage_text(), message_id);
-        if (updatedMessage.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
-        }
+    public CompletableFuture<ResponseEntity<Integer>> patchMessageById(@RequestBody Message message, @PathVariable Integer message_id) {
+        return async("messages.update", () -> {
+            if (!messageService.updateMessageById(message.getMessage_text(), message_id)) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+            }
 
-        return ResponseEntity.status(HttpStatus.OK).body(1);
+            return ResponseEntity.status(HttpStatus.OK).body(1);
+        });
     }
 
     /**
      * GET /accounts/{account_id}/messages
-     * Get all the messages associated with a provided account_id
+     * Get a page of the messages associated with a provided account_id, newest first,
+     * optionally limited to a time range. The cursor for the next page, if any, is
+     * returned in the X-Next-Cursor header.
+     * 
+     * Every page of an account carries the version of its message list as ETag. It is
+     * held in memory, so a matching If-None-Match gets 304 on the request thread
+     * without touching the database or the JDBC executor. Pages are served from the
+     * JSON cache while the version holds.
      * 
      * @param account_id the id of the account to look for
+     * @param since the earliest time_posted_epoch to include
+     * @param until the time_posted_epoch to stop before
+     * @param limit the maximum number of messages to return
+     * @param after the cursor of the previous page
+     * @param ifNoneMatch the ETags the client already has
      * @return
      */
     @GetMapping("/accounts/{account_id}/messages")
     @ResponseBody
-    public ResponseEntity<List<Message>> getMessagesByAccountId(@PathVariable Integer account_id) {
-        return ResponseEntity.status(HttpStatus.OK).body(messageService.getMessagesByAccountId(account_id));
+    public CompletableFuture<ResponseEntity<CachedJson>> getMessagesByAccountId(
+        @PathVariable Integer account_id,
+        @RequestParam(required = false) Long since,
+        @RequestParam(required = false) Long until,
+        @RequestParam(required = false) Integer limit,
+        @RequestParam(required = false) String after,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        // Taken before the page is read, so the ETag can only be older than the content.
+        String version = messageService.getMessagesVersion(account_id);
+        String etag = etag(version);
+        if (notModified(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build());
+        }
+
+        return async("accounts.messages", () -> {
+            Optional<CachedJson> page = messageService.getMessagesJsonByAccountId(account_id, version, since, until, limit, after);
+            if (page.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+            }
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK).eTag(etag);
+            if (page.get().getNextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, page.get().getNextCursor());
+            }
+
+            return response.body(page.get());
+        });
+    }
+
+    /**
+     * GET /accounts/{account_id}/stats
+     * Get the number of messages an account has posted and the times of its first and
+     * last post, without reading its messages
+     * 
+     * @param account_id the id of the account to look for
+     * @return the stats, or an empty body if the account does not exist
+     */
+    @GetMapping("/accounts/{account_id}/stats")
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<AccountStats>> getAccountStats(@PathVariable Integer account_id) {
+        return async("accounts.stats", () -> ResponseEntity.status(HttpStatus.OK).body(
+            messageService.getAccountStats(account_id).orElse(null)
+        ));
+    }
+
+    /**
+     * GET /accounts/{account_id}/messages (Accept: application/x-ndjson)
+     * Streams every message associated with a provided account_id as newline-delimited
+     * JSON. Time ranges are only served as pages, so since and until are rejected with 400.
+     * 
+     * @param account_id the id of the account to look for
+     * @param since must be absent
+     * @param until must be absent
+     * @param response the response to write the messages to
+     * @throws IOException if the client connection fails
+     */
+    @GetMapping(value = "/accounts/{account_id}/messages", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void streamMessagesByAccountId(
+        @PathVariable Integer account_id,
+        @RequestParam(required = false) Long since,
+        @RequestParam(required = false) Long until,
+        HttpServletResponse response
+    ) throws IOException {
+        rejectTimeRange(since, until);
+        streamResponse(response, consumer -> messageService.streamMessagesByAccountId(account_id, consumer));
+    }
+
+    /**
+     * POST /accounts/{account_id}/following/{followee_id}
+     * Follow an account. Following an account that is already followed does nothing.
+     * 
+     * @param account_id the id of the account that follows
+     * @param followee_id the id of the account to follow
+     * @return 1, or 400 if either account does not exist or they are the same
+     */
+    @PostMapping("/accounts/{account_id}/following/{followee_id}")
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<Integer>> follow(@PathVariable Integer account_id, @PathVariable Integer followee_id) {
+        return async("accounts.follow", () -> feedService.follow(account_id, followee_id)
+            ? ResponseEntity.status(HttpStatus.OK).body(1)
+            : ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null));
+    }
+
+    /**
+     * DELETE /accounts/{account_id}/following/{followee_id}
+     * Stop following an account
+     * 
+     * @param account_id the id of the account that follows
+     * @param followee_id the id of the account to stop following
+     * @return 1 if the account was followed, an empty body otherwise
+     */
+    @DeleteMapping("/accounts/{account_id}/following/{followee_id}")
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<Integer>> unfollow(@PathVariable Integer account_id, @PathVariable Integer followee_id) {
+        return async("accounts.unfollow", () -> ResponseEntity.status(HttpStatus.OK).body(
+            feedService.unfollow(account_id, followee_id) ? 1 : null
+        ));
+    }
+
+    /**
+     * GET /accounts/{account_id}/feed
+     * Get a page of the home feed of an account: the messages of the accounts it
+     * follows, newest first. The cursor for the next page, if any, is returned in the
+     * X-Next-Cursor header; 503 with Retry-After while the timelines load at startup.
+     * 
+     * @param account_id the id of the reading account
+     * @param limit the maximum number of messages to return
+     * @param after the cursor of the previous page
+     * @return
+     */
+    @GetMapping("/accounts/{account_id}/feed")
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<List<Message>>> getFeed(
+        @PathVariable Integer account_id,
+        @RequestParam(required = false) Integer limit,
+        @RequestParam(required = false) String after
+    ) {
+        return async("accounts.feed", () -> pageResponse(feedService.getFeed(account_id, limit, after)));
+    }
+
+    /**
+     * Streams carry no cursor to resume from, so they are not offered for time ranges.
+     */
+    private static void rejectTimeRange(Long since, Long until) {
+        if (since != null || until != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Time ranges are only served as pages");
+        }
+    }
+
+    /**
+     * Write messages to the response body as newline-delimited JSON, one line per
+     * message as it is read, without buffering the whole result.
+     * 
+     * @param response the response to write to
+     * @param source feeds each message to the given consumer
+     * @throws IOException if the client connection fails
+     */
+    private void streamResponse(HttpServletResponse response, Consumer<Consumer<Message>> source) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        OutputStream out = response.getOutputStream();
+
+        try {
+            source.accept(message -> {
+                try {
+                    out.write(objectMapper.writeValueAsBytes(message));
+                    out.write('\n');
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Run a handler body on the JDBC executor, answering 503 with Retry-After if the
+     * executor is full or the endpoint's timeout passes before the body starts. With
+     * async mode off the future is already complete and the response is written
+     * without an async dispatch (see CompletedFutureReturnValueHandler).
+     * 
+     * @param endpoint the endpoint name, used to look up its timeout
+     * @param handler the handler body
+     * @return
+     */
+    private <T> CompletableFuture<ResponseEntity<T>> async(String endpoint, Callable<ResponseEntity<T>> handler) {
+        return jdbcExecutor.call(endpoint, handler).exceptionally(ex -> unavailable(endpoint, ex));
+    }
+
+    /**
+     * Turn back-pressure failures (a full executor or ingestion queue, a timeout before
+     * the work started, or a search index or home timelines that are still loading) into
+     * 503 with Retry-After; none of them has changed anything, so the request is safe to
+     * retry. Anything else is rethrown to the normal error handling.
+     * 
+     * @param endpoint the endpoint name, for logging
+     * @param ex the failure
+     * @return
+     */
+    private <T> ResponseEntity<T> unavailable(String endpoint, Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (!(cause instanceof RejectedExecutionException
+            || cause instanceof TimeoutException
+            || cause instanceof MessageQueueFullException
+            || cause instanceof SearchIndexUnavailableException
+            || cause instanceof FeedUnavailableException)) {
+            throw ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(cause);
+        }
+
+        logger.warn("{} rejected: {}", endpoint, cause.toString());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(null);
+    }
+
+    /**
+     * Build the response for a keyset page of messages.
+     * 
+     * @param page the page, empty if the limit or cursor was rejected
+     * @return
+     */
+    private ResponseEntity<List<Message>> pageResponse(Optional<MessagePage> page) {
+        if (page.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+        if (page.get().getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.get().getNextCursor());
+        }
+
+        return response.body(page.get().getMessages());
+    }
+
+    private static String etag(Object version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Check an If-None-Match header against the current ETag, with the weak comparison
+     * GET calls for: W/ prefixes are ignored, and * matches anything that exists.
+     */
+    private static boolean notModified(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
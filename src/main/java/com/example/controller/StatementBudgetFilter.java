@@ -0,0 +1,88 @@
+package com.example.controller;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.repository.StatementCounter;
+import com.example.repository.StatementStatistics;
+
+/**
+ * Counts the SQL statements each request issues and logs a warning when an
+ * endpoint goes over its budget, from social-media.statements.budgets.&lt;endpoint&gt;
+ * or the default budget; a negative budget is unlimited. Async requests are
+ * checked once their result has been dispatched back. A request over its budget is
+ * also marked with the OVER_BUDGET_ATTRIBUTE request attribute.
+ */
+@Component
+@Profile("!reactive")
+public class StatementBudgetFilter extends OncePerRequestFilter {
+
+    static final String STATISTICS_ATTRIBUTE = StatementBudgetFilter.class.getName() + ".statistics";
+    public static final String OVER_BUDGET_ATTRIBUTE = StatementBudgetFilter.class.getName() + ".overBudget";
+
+    private final Logger logger = LoggerFactory.getLogger(StatementBudgetFilter.class);
+
+    private final StatementCounter statementCounter;
+    private final Environment environment;
+    private final int defaultBudget;
+
+    public StatementBudgetFilter(
+        StatementCounter statementCounter,
+        Environment environment,
+        @Value("${social-media.statements.default-budget:-1}") int defaultBudget
+    ) {
+        this.statementCounter = statementCounter;
+        this.environment = environment;
+        this.defaultBudget = defaultBudget;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        StatementStatistics statistics = (StatementStatistics) request.getAttribute(STATISTICS_ATTRIBUTE);
+        if (statistics == null) {
+            statistics = new StatementStatistics();
+            request.setAttribute(STATISTICS_ATTRIBUTE, statistics);
+        }
+
+        statementCounter.bind(statistics);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            statementCounter.unbind();
+            if (!request.isAsyncStarted()) {
+                checkBudget(request, statistics);
+            }
+        }
+    }
+
+    private void checkBudget(HttpServletRequest request, StatementStatistics statistics) {
+        String endpoint = statistics.getEndpoint();
+        int budget = endpoint == null
+            ? defaultBudget
+            : environment.getProperty("social-media.statements.budgets." + endpoint, Integer.class, defaultBudget);
+        if (budget >= 0 && statistics.getCount() > budget) {
+            request.setAttribute(OVER_BUDGET_ATTRIBUTE, Boolean.TRUE);
+            logger.warn("{} {} ({}) issued {} statements, over its budget of {}; {} ms in the database",
+                request.getMethod(), request.getRequestURI(), endpoint, statistics.getCount(), budget,
+                String.format("%.3f", statistics.getNanos() / 1e6));
+        }
+    }
+}
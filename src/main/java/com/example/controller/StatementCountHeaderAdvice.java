@@ -0,0 +1,61 @@
+package com.example.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import com.example.repository.StatementCounter;
+import com.example.repository.StatementStatistics;
+
+/**
+ * Debug headers with the number of SQL statements the request issued and the time
+ * spent in them, in milliseconds. Added just before the body is written, once the
+ * handler (and any async work) has finished with the database.
+ */
+@ControllerAdvice
+@Profile("!reactive")
+public class StatementCountHeaderAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String STATEMENT_COUNT_HEADER = "X-Statement-Count";
+    public static final String STATEMENT_TIME_HEADER = "X-Statement-Time";
+
+    private final StatementCounter statementCounter;
+    private final boolean enabled;
+
+    public StatementCountHeaderAdvice(
+        StatementCounter statementCounter,
+        @Value("${social-media.statements.header.enabled:false}") boolean enabled
+    ) {
+        this.statementCounter = statementCounter;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return enabled;
+    }
+
+    @Override
+    public Object beforeBodyWrite(
+        Object body,
+        MethodParameter returnType,
+        MediaType selectedContentType,
+        Class<? extends HttpMessageConverter<?>> selectedConverterType,
+        ServerHttpRequest request,
+        ServerHttpResponse response
+    ) {
+        StatementStatistics statistics = statementCounter.current();
+        if (statistics != null) {
+            response.getHeaders().set(STATEMENT_COUNT_HEADER, Integer.toString(statistics.getCount()));
+            response.getHeaders().set(STATEMENT_TIME_HEADER, String.format("%.3f", statistics.getNanos() / 1e6));
+        }
+
+        return body;
+    }
+}
@@ -13,7 +13,7 @@ public class Account {
      * An id for this Account. You should use this as the Entity's ID.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer account_id;
     /**
      * A username for this Account (must be unique and not blank)
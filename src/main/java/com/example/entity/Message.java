@@ -2,6 +2,8 @@ package com.example.entity;
 
 import javax.persistence.*;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 /**
  * This is a class that models a Message.
  *
@@ -14,7 +16,9 @@ public class Message {
      * An id for this message which will be automatically generated by the database.
      */
      @Column (name="message_id")
-     @Id @GeneratedValue
+     @Id
+     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "message_seq")
+     @SequenceGenerator(name = "message_seq", sequenceName = "message_seq", allocationSize = 50)
     private Integer message_id;
     /**
      * The id for the user who has posted this message. We will assume that this is provided by the front-end of this
@@ -33,6 +37,14 @@ public class Message {
      */
     @Column (name="time_posted_epoch")
     private Long time_posted_epoch;
+    /**
+     * Bumped on every change to the message and used as its ETag. Left out of the JSON, so clients can neither see
+     * nor set it; a null version is also how a new message is told apart from an existing one.
+     */
+    @Version
+    @Column (name="version")
+    @JsonIgnore
+    private Integer version;
     /**
      * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
      * Jackson Objectmapper to work.
@@ -121,6 +133,18 @@ public class Message {
     public void setTime_posted_epoch(Long time_posted_epoch) {
         this.time_posted_epoch = time_posted_epoch;
     }
+    /**
+     * @return the version of the message, null if it has not been saved yet
+     */
+    public Integer getVersion() {
+        return version;
+    }
+    /**
+     * @param version the version of the message, for copies of a loaded message
+     */
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
     /**
      * Overriding the default equals() method adds functionality to tell when two objects are identical, allowing
      * Assert.assertEquals and List.contains to function.
@@ -0,0 +1,7 @@
+package com.example.exception;
+
+public class FeedUnavailableException extends Exception {
+    public FeedUnavailableException(String message) {
+        super(message);
+    }
+}
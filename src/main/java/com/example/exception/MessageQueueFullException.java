@@ -0,0 +1,7 @@
+package com.example.exception;
+
+public class MessageQueueFullException extends Exception {
+    public MessageQueueFullException(String message) {
+        super(message);
+    }
+}
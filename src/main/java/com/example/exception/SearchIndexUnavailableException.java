@@ -0,0 +1,7 @@
+package com.example.exception;
+
+public class SearchIndexUnavailableException extends Exception {
+    public SearchIndexUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -1,11 +1,30 @@
 package com.example.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import com.example.entity.Account;
 
 public interface AccountRepository extends JpaRepository<Account, Integer> {
     Optional<Account> findAccountByUsername(String username);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT username FROM Account")
+    Stream<String> streamAllUsernames();
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT account_id FROM Account")
+    Stream<Integer> streamAllAccountIds();
+
+    @Query("SELECT account_id FROM Account WHERE account_id IN :account_ids")
+    List<Integer> findExistingAccountIds(@Param("account_ids") Collection<Integer> account_ids);
 }
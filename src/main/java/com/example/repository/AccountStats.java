@@ -0,0 +1,68 @@
+package com.example.repository;
+
+import java.util.Objects;
+
+/**
+ * How many messages an account has posted and when it posted the first and last
+ * of them. The times are null while the account has no message with a time.
+ */
+public class AccountStats {
+
+    private final int account_id;
+    private final long message_count;
+    private final Long first_posted_epoch;
+    private final Long last_posted_epoch;
+
+    public AccountStats(int account_id, long message_count, Long first_posted_epoch, Long last_posted_epoch) {
+        this.account_id = account_id;
+        this.message_count = message_count;
+        this.first_posted_epoch = first_posted_epoch;
+        this.last_posted_epoch = last_posted_epoch;
+    }
+
+    public int getAccount_id() {
+        return account_id;
+    }
+
+    public long getMessage_count() {
+        return message_count;
+    }
+
+    public Long getFirst_posted_epoch() {
+        return first_posted_epoch;
+    }
+
+    public Long getLast_posted_epoch() {
+        return last_posted_epoch;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        AccountStats other = (AccountStats) o;
+        return account_id == other.account_id
+            && message_count == other.message_count
+            && Objects.equals(first_posted_epoch, other.first_posted_epoch)
+            && Objects.equals(last_posted_epoch, other.last_posted_epoch);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(account_id, message_count, first_posted_epoch, last_posted_epoch);
+    }
+
+    @Override
+    public String toString() {
+        return "AccountStats{" +
+            "account_id=" + account_id +
+            ", message_count=" + message_count +
+            ", first_posted_epoch=" + first_posted_epoch +
+            ", last_posted_epoch=" + last_posted_epoch +
+            '}';
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.example.entity.Message;
+
+/**
+ * The per-account message counters on the account table. Writers call these in the
+ * same transaction as the message insert or delete they account for; reads are a
+ * primary-key lookup.
+ *
+ * LEAST and GREATEST skip nulls in H2, so a message without a time counts but does
+ * not move the first or last post time.
+ */
+@Repository
+public class AccountStatsRepository {
+
+    static final String RECORD_POSTS =
+        "UPDATE account SET message_count = message_count + ?,"
+            + " first_posted_epoch = LEAST(first_posted_epoch, CAST(? AS BIGINT)),"
+            + " last_posted_epoch = GREATEST(last_posted_epoch, CAST(? AS BIGINT))"
+            + " WHERE account_id = ?";
+
+    /**
+     * Deletes the message and takes it off its author's counters in one statement, for
+     * MessageRepository.deleteByMessageId and the reactive repository. The first and
+     * last post times are only looked up again when the deleted message was the first
+     * or last; the lookups skip it by id since the statement still sees it. The last
+     * post time comes straight off message_posted_by_time_idx; the first post time
+     * reads the account's index range, since H2 cannot walk the index backwards.
+     */
+    static final String DELETE_MESSAGE =
+        "MERGE INTO account a USING ("
+            + "SELECT message_id, posted_by, time_posted_epoch FROM OLD TABLE (DELETE FROM message WHERE message_id = ?1)"
+            + ") d ON a.account_id = d.posted_by"
+            + " WHEN MATCHED THEN UPDATE SET message_count = message_count - 1,"
+            + " first_posted_epoch = CASE WHEN first_posted_epoch = d.time_posted_epoch THEN ("
+            + "SELECT MIN(time_posted_epoch) FROM message WHERE posted_by = d.posted_by AND message_id <> d.message_id"
+            + ") ELSE first_posted_epoch END,"
+            + " last_posted_epoch = CASE WHEN last_posted_epoch = d.time_posted_epoch THEN ("
+            + "SELECT time_posted_epoch FROM message"
+            + " WHERE posted_by = d.posted_by AND time_posted_epoch IS NOT NULL AND message_id <> d.message_id"
+            + " ORDER BY posted_by, time_posted_epoch DESC LIMIT 1"
+            + ") ELSE last_posted_epoch END";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AccountStatsRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Count a new message against its author.
+     *
+     * @return false if the author has no account row
+     */
+    public boolean recordPost(Integer account_id, Long time_posted_epoch) {
+        return jdbcTemplate.update(RECORD_POSTS, 1, time_posted_epoch, time_posted_epoch, account_id) > 0;
+    }
+
+    /**
+     * Count new messages against their authors, one batched UPDATE row per author.
+     */
+    public void recordPosts(Collection<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(RECORD_POSTS, postsByAuthor(messages));
+    }
+
+    public Optional<AccountStats> findById(Integer account_id) {
+        return jdbcTemplate.query(
+            "SELECT account_id, message_count, first_posted_epoch, last_posted_epoch FROM account WHERE account_id = ?",
+            AccountStatsRepository::toStats, account_id
+        ).stream().findFirst();
+    }
+
+    /**
+     * Read an account's counters and lock its row until the transaction ends, which
+     * holds off every message insert and delete for the account.
+     */
+    public Optional<AccountStats> findByIdForUpdate(Integer account_id) {
+        return jdbcTemplate.query(
+            "SELECT account_id, message_count, first_posted_epoch, last_posted_epoch FROM account WHERE account_id = ? FOR UPDATE",
+            AccountStatsRepository::toStats, account_id
+        ).stream().findFirst();
+    }
+
+    /**
+     * Work an account's stats out from the message table.
+     */
+    public AccountStats compute(Integer account_id) {
+        return jdbcTemplate.queryForObject(
+            "SELECT CAST(? AS INT), COUNT(*), MIN(time_posted_epoch), MAX(time_posted_epoch) FROM message WHERE posted_by = ?",
+            AccountStatsRepository::toStats, account_id, account_id
+        );
+    }
+
+    /**
+     * Find the accounts whose counters disagree with the message table, in one pass
+     * over message_posted_by_time_idx. Writes racing the pass can show up here without
+     * having drifted, so each one should be checked again under its row lock.
+     */
+    public List<Integer> findDriftCandidates() {
+        return jdbcTemplate.queryForList(
+            "SELECT a.account_id FROM account a LEFT JOIN ("
+                + "SELECT posted_by, COUNT(*) AS message_count, MIN(time_posted_epoch) AS first_posted_epoch,"
+                + " MAX(time_posted_epoch) AS last_posted_epoch FROM message GROUP BY posted_by"
+                + ") m ON m.posted_by = a.account_id"
+                + " WHERE a.message_count <> COALESCE(m.message_count, 0)"
+                + " OR a.first_posted_epoch IS DISTINCT FROM m.first_posted_epoch"
+                + " OR a.last_posted_epoch IS DISTINCT FROM m.last_posted_epoch",
+            Integer.class
+        );
+    }
+
+    /**
+     * Overwrite an account's counters.
+     */
+    public void save(AccountStats stats) {
+        jdbcTemplate.update(
+            "UPDATE account SET message_count = ?, first_posted_epoch = ?, last_posted_epoch = ? WHERE account_id = ?",
+            stats.getMessage_count(), stats.getFirst_posted_epoch(), stats.getLast_posted_epoch(), stats.getAccount_id()
+        );
+    }
+
+    /**
+     * Sum new messages up per author: count, earliest and latest time.
+     */
+    static List<Object[]> postsByAuthor(Collection<Message> messages) {
+        Map<Integer, Object[]> rows = new LinkedHashMap<>();
+        for (Message message : messages) {
+            Long time = message.getTime_posted_epoch();
+            Object[] row = rows.get(message.getPosted_by());
+            if (row == null) {
+                rows.put(message.getPosted_by(), new Object[] {1, time, time, message.getPosted_by()});
+                continue;
+            }
+
+            row[0] = (Integer) row[0] + 1;
+            if (time != null) {
+                row[1] = row[1] == null ? time : Math.min((Long) row[1], time);
+                row[2] = row[2] == null ? time : Math.max((Long) row[2], time);
+            }
+        }
+        return new ArrayList<>(rows.values());
+    }
+
+    private static AccountStats toStats(ResultSet rs, int rowNum) throws SQLException {
+        return new AccountStats(
+            rs.getInt(1), rs.getLong(2), rs.getObject(3, Long.class), rs.getObject(4, Long.class)
+        );
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.repository;
+
+import java.util.function.BiConsumer;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * The follow table: one row per (follower_id, followee_id) pair.
+ */
+@Repository
+public class FollowRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FollowRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return true if the follow was inserted, false if it already existed
+     */
+    public boolean save(Integer follower_id, Integer followee_id) {
+        try {
+            jdbcTemplate.update("INSERT INTO follow (follower_id, followee_id) VALUES (?, ?)", follower_id, followee_id);
+            return true;
+        } catch (DuplicateKeyException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if the follow existed and was deleted
+     */
+    public boolean delete(Integer follower_id, Integer followee_id) {
+        return jdbcTemplate.update("DELETE FROM follow WHERE follower_id = ? AND followee_id = ?", follower_id, followee_id) > 0;
+    }
+
+    /**
+     * Hand every (follower_id, followee_id) pair to the consumer as rows are read.
+     */
+    public void findAll(BiConsumer<Integer, Integer> consumer) {
+        jdbcTemplate.query("SELECT follower_id, followee_id FROM follow", rs -> {
+            consumer.accept(rs.getInt(1), rs.getInt(2));
+        });
+    }
+}
@@ -1,14 +1,135 @@
 package com.example.repository;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.entity.Message;
 
+/**
+ * Per-account queries order by posted_by first, even though it is fixed by the WHERE clause,
+ * so H2 matches the ORDER BY against message_posted_by_time_idx and reads rows in index order.
+ *
+ * Time-range continuations repeat the cursor's time as a plain upper bound: H2 cannot turn
+ * the keyset OR into an index range, but it can start the scan at the bound instead of at
+ * the top of the range.
+ *
+ * Writes that need the message's author back select it from the H2 data change delta table
+ * of the write, so they stay a single statement.
+ *
+ * Listings select into Message's constructor rather than loading entities, so their rows
+ * never enter a persistence context: no snapshots for dirty checking, nothing to flush or
+ * detach. They run in read-only transactions of their own unless they join one.
+ */
 public interface MessageRepository extends JpaRepository<Message, Integer> {
-    @Query("FROM Message WHERE posted_by = :posted_by")
+    String PROJECTION = "SELECT new com.example.entity.Message(message_id, posted_by, message_text, time_posted_epoch) FROM Message";
+
+    @Transactional(readOnly = true)
+    @Query(PROJECTION + " WHERE posted_by = :posted_by ORDER BY posted_by, time_posted_epoch DESC, message_id")
     List<Message> findAllByPostedBy(@Param("posted_by") Integer posted_by);
+
+    @Transactional(readOnly = true)
+    @Query(PROJECTION + " ORDER BY message_id")
+    List<Message> findFirstPage(Pageable pageable);
+
+    @Transactional(readOnly = true)
+    @Query(PROJECTION + " WHERE message_id > :message_id ORDER BY message_id")
+    List<Message> findPageAfter(@Param("message_id") Integer message_id, Pageable pageable);
+
+    @Transactional(readOnly = true)
+    @Query(PROJECTION + " WHERE posted_by = :posted_by ORDER BY posted_by, time_posted_epoch DESC, message_id")
+    List<Message> findFirstPageByPostedBy(@Param("posted_by") Integer posted_by, Pageable pageable);
+
+    @Transactional(readOnly = true)
+    @Query(PROJECTION + " WHERE posted_by = :posted_by"
+        + " AND (time_posted_epoch < :time_posted_epoch"
+        + " OR (time_posted_epoch = :time_posted_epoch AND message_id > :message_id))"
+        + " ORDER BY posted_by, time_posted_epoch DESC, message_id")
+    List<Message> findPageByPostedByAfter(
+        @Param("posted_by") Integer posted_by,
+        @Param("time_posted_epoch") Long time_posted_epoch,
+        @Param("message_id") Integer message_id,
+        Pageable pageable
+    );
+
+    @Transactional(readOnly = true)
+    @Query(PROJECTION + " WHERE time_posted_epoch >= :since AND time_posted_epoch < :until"
+        + " ORDER BY time_posted_epoch DESC, message_id")
+    List<Message> findFirstPageInRange(@Param("since") Long since, @Param("until") Long until, Pageable pageable);
+
+    @Transactional(readOnly = true)
+    @Query(PROJECTION + " WHERE time_posted_epoch >= :since AND time_posted_epoch < :until"
+        + " AND time_posted_epoch <= :time_posted_epoch"
+        + " AND (time_posted_epoch < :time_posted_epoch"
+        + " OR (time_posted_epoch = :time_posted_epoch AND message_id > :message_id))"
+        + " ORDER BY time_posted_epoch DESC, message_id")
+    List<Message> findPageInRangeAfter(
+        @Param("since") Long since,
+        @Param("until") Long until,
+        @Param("time_posted_epoch") Long time_posted_epoch,
+        @Param("message_id") Integer message_id,
+        Pageable pageable
+    );
+
+    @Transactional(readOnly = true)
+    @Query(PROJECTION + " WHERE posted_by = :posted_by"
+        + " AND time_posted_epoch >= :since AND time_posted_epoch < :until"
+        + " ORDER BY posted_by, time_posted_epoch DESC, message_id")
+    List<Message> findFirstPageByPostedByInRange(
+        @Param("posted_by") Integer posted_by,
+        @Param("since") Long since,
+        @Param("until") Long until,
+        Pageable pageable
+    );
+
+    @Transactional(readOnly = true)
+    @Query(PROJECTION + " WHERE posted_by = :posted_by"
+        + " AND time_posted_epoch >= :since AND time_posted_epoch < :until"
+        + " AND time_posted_epoch <= :time_posted_epoch"
+        + " AND (time_posted_epoch < :time_posted_epoch"
+        + " OR (time_posted_epoch = :time_posted_epoch AND message_id > :message_id))"
+        + " ORDER BY posted_by, time_posted_epoch DESC, message_id")
+    List<Message> findPageByPostedByInRangeAfter(
+        @Param("posted_by") Integer posted_by,
+        @Param("since") Long since,
+        @Param("until") Long until,
+        @Param("time_posted_epoch") Long time_posted_epoch,
+        @Param("message_id") Integer message_id,
+        Pageable pageable
+    );
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query(PROJECTION + " ORDER BY message_id")
+    Stream<Message> streamAll();
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query(PROJECTION + " WHERE posted_by = :posted_by ORDER BY posted_by, time_posted_epoch DESC, message_id")
+    Stream<Message> streamAllByPostedBy(@Param("posted_by") Integer posted_by);
+
+    /**
+     * @return the author of the deleted message, empty if there was no such message
+     */
+    @Query(value = "SELECT account_id FROM FINAL TABLE (" + AccountStatsRepository.DELETE_MESSAGE + ")", nativeQuery = true)
+    Optional<Integer> deleteByMessageId(Integer message_id);
+
+    /**
+     * Replace a message's text and bump its version.
+     *
+     * @return the author of the updated message, empty if there was no such message
+     */
+    @Query(
+        value = "SELECT posted_by FROM FINAL TABLE ("
+            + "UPDATE message SET message_text = :message_text, version = version + 1 WHERE message_id = :message_id)",
+        nativeQuery = true
+    )
+    Optional<Integer> updateMessageText(@Param("message_id") Integer message_id, @Param("message_text") String message_text);
 }
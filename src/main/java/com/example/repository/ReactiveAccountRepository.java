@@ -0,0 +1,77 @@
+package com.example.repository;
+
+import java.util.Collection;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.example.entity.Account;
+
+import io.r2dbc.spi.Row;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of AccountRepository for the reactive profile.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveAccountRepository extends ReactiveRepositorySupport {
+
+    public ReactiveAccountRepository(ReactiveDatabase database) {
+        super(database.getConnectionFactory());
+    }
+
+    /**
+     * Insert a new account; the account_id is generated by the database.
+     *
+     * @param account the account to insert
+     * @return the account with its generated account_id
+     */
+    public Mono<Account> save(Account account) {
+        return withConnection(connection -> Flux.from(
+            connection.createStatement("INSERT INTO account (username, password) VALUES ($1, $2)")
+                .bind(0, account.getUsername())
+                .bind(1, account.getPassword())
+                .returnGeneratedValues("account_id")
+                .execute()
+        ).flatMap(result -> result.map((row, metadata) -> row.get("account_id", Integer.class))))
+            .next()
+            .map(accountId -> new Account(accountId, account.getUsername(), account.getPassword()));
+    }
+
+    public Mono<Account> findAccountByUsername(String username) {
+        return query("SELECT account_id, username, password FROM account WHERE username = $1", ReactiveAccountRepository::toAccount, username)
+            .next();
+    }
+
+    public Mono<Boolean> existsById(Integer accountId) {
+        return query("SELECT 1 FROM account WHERE account_id = $1", row -> true, accountId)
+            .hasElements();
+    }
+
+    public Flux<Integer> findExistingAccountIds(Collection<Integer> accountIds) {
+        if (accountIds.isEmpty()) {
+            return Flux.empty();
+        }
+
+        String placeholders = IntStream.rangeClosed(1, accountIds.size())
+            .mapToObj(i -> "$" + i)
+            .collect(Collectors.joining(", "));
+        return query(
+            "SELECT account_id FROM account WHERE account_id IN (" + placeholders + ")",
+            row -> row.get("account_id", Integer.class),
+            accountIds.toArray()
+        );
+    }
+
+    private static Account toAccount(Row row) {
+        return new Account(
+            row.get("account_id", Integer.class),
+            row.get("username", String.class),
+            row.get("password", String.class)
+        );
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.repository;
+
+import java.time.Duration;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+
+/**
+ * R2DBC connection pool for the reactive profile. It opens the same in-memory H2
+ * database as the JDBC datasource, which still creates and seeds the schema from
+ * data.sql at startup.
+ *
+ * The pool is deliberately not registered as a ConnectionFactory bean: Spring Boot
+ * backs off its JDBC datasource when it sees one.
+ */
+@Component
+@Profile("reactive")
+public class ReactiveDatabase {
+
+    private final ConnectionPool connectionPool;
+
+    public ReactiveDatabase(
+        @Value("${social-media.reactive.url}") String url,
+        @Value("${spring.datasource.username}") String username,
+        @Value("${spring.datasource.password}") String password,
+        @Value("${social-media.reactive.pool.initial-size:10}") int initialSize,
+        @Value("${social-media.reactive.pool.max-size:10}") int maxSize,
+        @Value("${social-media.reactive.pool.max-acquire-time:5s}") Duration maxAcquireTime
+    ) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+            .option(ConnectionFactoryOptions.USER, username)
+            .option(ConnectionFactoryOptions.PASSWORD, password)
+            .build();
+
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+            .initialSize(initialSize)
+            .maxSize(maxSize)
+            .maxAcquireTime(maxAcquireTime)
+            .build());
+    }
+
+    public ConnectionFactory getConnectionFactory() {
+        return connectionPool;
+    }
+
+    @PreDestroy
+    public void close() {
+        connectionPool.dispose();
+    }
+}
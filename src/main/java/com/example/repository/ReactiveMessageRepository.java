@@ -0,0 +1,273 @@
+package com.example.repository;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.example.entity.Message;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.Statement;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of MessageRepository for the reactive profile. The
+ * queries and their ORDER BY clauses are the same as MessageRepository's so they
+ * use the same indexes.
+ *
+ * Message ids come from message_seq 50 at a time, like the JPA mapping, so most
+ * inserts need no round trip for the id. A sequence value V reserves V-49..V, as
+ * with Hibernate's pooled optimizer, so both stacks can insert into one database
+ * without handing out the same id.
+ *
+ * Inserts and deletes keep the authors' counters on the account table in step, in
+ * the same transaction, with AccountStatsRepository's statements.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveMessageRepository extends ReactiveRepositorySupport {
+
+    private static final String COLUMNS = "message_id, posted_by, message_text, time_posted_epoch";
+    private static final int ID_ALLOCATION_SIZE = 50;
+
+    private final AtomicReference<IdBlock> idBlock = new AtomicReference<>(new IdBlock(1, 0));
+
+    public ReactiveMessageRepository(ReactiveDatabase database) {
+        super(database.getConnectionFactory());
+    }
+
+    /**
+     * Insert a new message with a generated message_id, counting it against its
+     * author in the same transaction.
+     *
+     * @param message the message to insert; its message_id is set on success
+     * @return the inserted message
+     */
+    public Mono<Message> save(Message message) {
+        return nextId()
+            .flatMap(messageId -> {
+                message.setMessage_id(messageId);
+                return withConnection(connection -> Flux.concat(
+                    Mono.from(connection.beginTransaction()),
+                    recordPosts(connection, List.of(message)),
+                    Flux.from(insert(connection, List.of(message)).execute()).flatMap(result -> result.getRowsUpdated()),
+                    Mono.from(connection.commitTransaction())
+                ).onErrorResume(ex -> Mono.from(connection.rollbackTransaction()).then(Mono.error(ex))))
+                    .then(Mono.just(message));
+            });
+    }
+
+    /**
+     * Insert many new messages in one transaction, as a single batched statement,
+     * along with one counter update per author.
+     *
+     * @param messages the messages to insert; their message_ids are set on success
+     * @return the inserted messages
+     */
+    public Mono<List<Message>> saveAll(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return Mono.just(messages);
+        }
+
+        return Flux.fromIterable(messages)
+            .concatMap(message -> nextId().doOnNext(message::setMessage_id))
+            .then(withConnection(connection -> Flux.concat(
+                Mono.from(connection.beginTransaction()),
+                recordPosts(connection, messages),
+                Flux.from(insert(connection, messages).execute()).flatMap(result -> result.getRowsUpdated()),
+                Mono.from(connection.commitTransaction())
+            ).onErrorResume(ex -> Mono.from(connection.rollbackTransaction()).then(Mono.error(ex)))).then())
+            .thenReturn(messages);
+    }
+
+    public Mono<Message> findById(Integer messageId) {
+        return query("SELECT " + COLUMNS + " FROM message WHERE message_id = $1", ReactiveMessageRepository::toMessage, messageId)
+            .next();
+    }
+
+    public Flux<Message> findFirstPage(int limit) {
+        return query("SELECT " + COLUMNS + " FROM message ORDER BY message_id LIMIT $1", ReactiveMessageRepository::toMessage, limit);
+    }
+
+    public Flux<Message> findPageAfter(Integer messageId, int limit) {
+        return query(
+            "SELECT " + COLUMNS + " FROM message WHERE message_id > $1 ORDER BY message_id LIMIT $2",
+            ReactiveMessageRepository::toMessage, messageId, limit
+        );
+    }
+
+    public Flux<Message> findFirstPageByPostedBy(Integer postedBy, int limit) {
+        return query(
+            "SELECT " + COLUMNS + " FROM message WHERE posted_by = $1"
+                + " ORDER BY posted_by, time_posted_epoch DESC, message_id LIMIT $2",
+            ReactiveMessageRepository::toMessage, postedBy, limit
+        );
+    }
+
+    public Flux<Message> findPageByPostedByAfter(Integer postedBy, Long timePostedEpoch, Integer messageId, int limit) {
+        return withConnection(connection -> {
+            Statement statement = connection.createStatement(
+                "SELECT " + COLUMNS + " FROM message WHERE posted_by = $1"
+                    + " AND (time_posted_epoch < $2 OR (time_posted_epoch = $2 AND message_id > $3))"
+                    + " ORDER BY posted_by, time_posted_epoch DESC, message_id LIMIT $4"
+            ).bind("$1", postedBy);
+            bind(statement, "$2", timePostedEpoch, Long.class).bind("$3", messageId).bind("$4", limit);
+            return Flux.from(statement.execute()).flatMap(result -> result.map((row, metadata) -> toMessage(row)));
+        });
+    }
+
+    public Flux<Message> findFirstPageInRange(long since, long until, int limit) {
+        return query(
+            "SELECT " + COLUMNS + " FROM message WHERE time_posted_epoch >= $1 AND time_posted_epoch < $2"
+                + " ORDER BY time_posted_epoch DESC, message_id LIMIT $3",
+            ReactiveMessageRepository::toMessage, since, until, limit
+        );
+    }
+
+    public Flux<Message> findPageInRangeAfter(long since, long until, long timePostedEpoch, Integer messageId, int limit) {
+        return query(
+            "SELECT " + COLUMNS + " FROM message WHERE time_posted_epoch >= $1 AND time_posted_epoch < $2"
+                + " AND time_posted_epoch <= $3"
+                + " AND (time_posted_epoch < $3 OR (time_posted_epoch = $3 AND message_id > $4))"
+                + " ORDER BY time_posted_epoch DESC, message_id LIMIT $5",
+            ReactiveMessageRepository::toMessage, since, until, timePostedEpoch, messageId, limit
+        );
+    }
+
+    public Flux<Message> findFirstPageByPostedByInRange(Integer postedBy, long since, long until, int limit) {
+        return query(
+            "SELECT " + COLUMNS + " FROM message WHERE posted_by = $1"
+                + " AND time_posted_epoch >= $2 AND time_posted_epoch < $3"
+                + " ORDER BY posted_by, time_posted_epoch DESC, message_id LIMIT $4",
+            ReactiveMessageRepository::toMessage, postedBy, since, until, limit
+        );
+    }
+
+    public Flux<Message> findPageByPostedByInRangeAfter(
+        Integer postedBy, long since, long until, long timePostedEpoch, Integer messageId, int limit
+    ) {
+        return query(
+            "SELECT " + COLUMNS + " FROM message WHERE posted_by = $1"
+                + " AND time_posted_epoch >= $2 AND time_posted_epoch < $3"
+                + " AND time_posted_epoch <= $4"
+                + " AND (time_posted_epoch < $4 OR (time_posted_epoch = $4 AND message_id > $5))"
+                + " ORDER BY posted_by, time_posted_epoch DESC, message_id LIMIT $6",
+            ReactiveMessageRepository::toMessage, postedBy, since, until, timePostedEpoch, messageId, limit
+        );
+    }
+
+    public Flux<Message> findAll() {
+        return query("SELECT " + COLUMNS + " FROM message ORDER BY message_id", ReactiveMessageRepository::toMessage);
+    }
+
+    public Flux<Message> findAllByPostedBy(Integer postedBy) {
+        return query(
+            "SELECT " + COLUMNS + " FROM message WHERE posted_by = $1 ORDER BY posted_by, time_posted_epoch DESC, message_id",
+            ReactiveMessageRepository::toMessage, postedBy
+        );
+    }
+
+    /**
+     * Delete a message and take it off its author's counters, as a single statement.
+     *
+     * @return the number of messages deleted
+     */
+    public Mono<Long> deleteByMessageId(Integer messageId) {
+        return update(AccountStatsRepository.DELETE_MESSAGE, messageId);
+    }
+
+    public Mono<Long> updateMessageText(Integer messageId, String messageText) {
+        return update("UPDATE message SET message_text = $1, version = version + 1 WHERE message_id = $2", messageText, messageId);
+    }
+
+    /**
+     * Take the next id from the current block, fetching a new block from message_seq
+     * when it runs out. Blocks fetched concurrently are each used by the request that
+     * fetched them, so ids are never handed out twice, at worst with a gap.
+     */
+    private Mono<Integer> nextId() {
+        return Mono.defer(() -> {
+            IdBlock current = idBlock.get();
+            int messageId = current.next.getAndIncrement();
+            if (messageId <= current.last) {
+                return Mono.just(messageId);
+            }
+
+            return query("SELECT NEXT VALUE FOR message_seq", row -> row.get(0, Long.class))
+                .next()
+                .map(next -> {
+                    // The sequence starts at 1, so its first value reserves only itself.
+                    int last = next.intValue();
+                    IdBlock fetched = new IdBlock(Math.max(1, last - ID_ALLOCATION_SIZE + 1), last);
+                    int fetchedId = fetched.next.getAndIncrement();
+                    idBlock.compareAndSet(current, fetched);
+                    return fetchedId;
+                });
+        });
+    }
+
+    /**
+     * Count new messages against their authors, one UPDATE per author. They run one
+     * after another rather than as a batch: r2dbc-h2 keeps a pending add() around
+     * when binding by index, and the statement is shared with the JDBC side.
+     */
+    private static Flux<Integer> recordPosts(Connection connection, List<Message> messages) {
+        return Flux.fromIterable(AccountStatsRepository.postsByAuthor(messages))
+            .concatMap(row -> {
+                Statement statement = connection.createStatement(AccountStatsRepository.RECORD_POSTS).bind(0, row[0]);
+                bind(statement, 1, row[1]);
+                bind(statement, 2, row[2]);
+                return Flux.from(statement.bind(3, row[3]).execute()).flatMap(result -> result.getRowsUpdated());
+            });
+    }
+
+    private static void bind(Statement statement, int index, Object time) {
+        if (time == null) {
+            statement.bindNull(index, Long.class);
+        } else {
+            statement.bind(index, time);
+        }
+    }
+
+    private static Statement insert(Connection connection, List<Message> messages) {
+        Statement statement = connection.createStatement(
+            "INSERT INTO message (" + COLUMNS + ") VALUES ($1, $2, $3, $4)"
+        );
+        for (int i = 0; i < messages.size(); i++) {
+            if (i > 0) {
+                statement.add();
+            }
+            // Bound by name: r2dbc-h2 only clears its pending add() when binding by name.
+            Message message = messages.get(i);
+            statement.bind("$1", message.getMessage_id());
+            bind(statement, "$2", message.getPosted_by(), Integer.class);
+            bind(statement, "$3", message.getMessage_text(), String.class);
+            bind(statement, "$4", message.getTime_posted_epoch(), Long.class);
+        }
+        return statement;
+    }
+
+    private static Message toMessage(Row row) {
+        return new Message(
+            row.get("message_id", Integer.class),
+            row.get("posted_by", Integer.class),
+            row.get("message_text", String.class),
+            row.get("time_posted_epoch", Long.class)
+        );
+    }
+
+    private static class IdBlock {
+        final AtomicInteger next;
+        final int last;
+
+        IdBlock(int first, int last) {
+            this.next = new AtomicInteger(first);
+            this.last = last;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.repository;
+
+import java.util.function.Function;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.Statement;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Statement plumbing shared by the R2DBC repositories: each call borrows a pooled
+ * connection for the lifetime of one statement and returns it when the result
+ * has been consumed, cancelled or has failed.
+ */
+abstract class ReactiveRepositorySupport {
+
+    protected final ConnectionFactory connectionFactory;
+
+    protected ReactiveRepositorySupport(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    /**
+     * Run a query and map every row.
+     *
+     * @param sql the query, with $1, $2, ... placeholders
+     * @param mapper maps one row
+     * @param parameters the values bound to the placeholders, in order; must not be null
+     * @return the mapped rows
+     */
+    protected <T> Flux<T> query(String sql, Function<Row, T> mapper, Object... parameters) {
+        return withConnection(connection -> Flux.from(bind(connection.createStatement(sql), parameters).execute())
+            .flatMap(result -> result.map((row, metadata) -> mapper.apply(row))));
+    }
+
+    /**
+     * Run an INSERT, UPDATE or DELETE.
+     *
+     * @param sql the statement, with $1, $2, ... placeholders
+     * @param parameters the values bound to the placeholders, in order; must not be null
+     * @return the number of rows changed
+     */
+    protected Mono<Long> update(String sql, Object... parameters) {
+        return withConnection(connection -> Flux.from(bind(connection.createStatement(sql), parameters).execute())
+            .flatMap(result -> result.getRowsUpdated()))
+            .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Borrow a connection for the duration of the returned Flux.
+     */
+    protected <T> Flux<T> withConnection(Function<Connection, Flux<T>> work) {
+        return Flux.usingWhen(connectionFactory.create(), work, Connection::close);
+    }
+
+    /**
+     * Bind a possibly-null value, which R2DBC needs the type for.
+     */
+    protected static Statement bind(Statement statement, String name, Object value, Class<?> type) {
+        return value == null ? statement.bindNull(name, type) : statement.bind(name, value);
+    }
+
+    private static Statement bind(Statement statement, Object... parameters) {
+        for (int i = 0; i < parameters.length; i++) {
+            statement.bind(i, parameters[i]);
+        }
+        return statement;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.repository;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import com.example.entity.Account;
+import com.example.entity.Message;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+/**
+ * Hibernate second-level cache on JCache, backed by Caffeine. Accounts are cached
+ * by id, and logins reach them by id through AccountUsernameCache; messages only
+ * when enabled, since MessageCache already sits in front of message reads. The
+ * query cache stays off: any account insert would invalidate every cached username
+ * lookup, and under a steady trickle of registrations almost none survive.
+ *
+ * Every region is created here, bounded by entry count and expiring after write,
+ * and Hibernate is told to fail rather than create an unbounded one. The regions
+ * live in a CacheManager of this context's own rather than the JVM-wide default,
+ * so several application contexts in one JVM each get theirs. The entities
+ * are mapped to their regions through hibernate.classcache properties, leaving the
+ * entity classes as they are. Entries are stored by reference and keyed by the
+ * bare id, which each region can do as it holds a single entity type.
+ *
+ * An account entry and its username entry together cost about 400 bytes of
+ * heap, so the default of a million accounts takes around 400MB when full.
+ *
+ * Message writes that go through native statements (the single-statement update
+ * and delete) are not seen by Hibernate; MessageCache evicts those messages from
+ * the second-level cache when it invalidates them.
+ */
+@Component
+public class SecondLevelCache implements HibernatePropertiesCustomizer {
+
+    static final String ACCOUNT_REGION = "account";
+    static final String MESSAGE_REGION = "message";
+
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final CacheManager cacheManager;
+    private final boolean messagesEnabled;
+
+    public SecondLevelCache(
+        @Value("${social-media.accounts.second-level-cache.maximum-size:1000000}") long accountMaximumSize,
+        @Value("${social-media.accounts.second-level-cache.ttl:1h}") Duration accountTtl,
+        @Value("${social-media.messages.second-level-cache.enabled:false}") boolean messagesEnabled,
+        @Value("${social-media.messages.second-level-cache.maximum-size:100000}") long messageMaximumSize,
+        @Value("${social-media.messages.second-level-cache.ttl:10m}") Duration messageTtl
+    ) {
+        this.cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName()).getCacheManager(
+            URI.create(SecondLevelCache.class.getName() + "-" + INSTANCES.incrementAndGet()), SecondLevelCache.class.getClassLoader()
+        );
+        this.messagesEnabled = messagesEnabled;
+
+        cacheManager.createCache(ACCOUNT_REGION, region(accountMaximumSize, accountTtl));
+        if (messagesEnabled) {
+            cacheManager.createCache(MESSAGE_REGION, region(messageMaximumSize, messageTtl));
+        }
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+        hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, "false");
+        hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, ConfigSettings.SIMPLE_FACTORY_NAME);
+        hibernateProperties.put(AvailableSettings.CACHE_KEYS_FACTORY, "simple");
+        hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+        hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        hibernateProperties.put(AvailableSettings.CLASS_CACHE_PREFIX + "." + Account.class.getName(), "read-write," + ACCOUNT_REGION);
+        if (messagesEnabled) {
+            hibernateProperties.put(AvailableSettings.CLASS_CACHE_PREFIX + "." + Message.class.getName(), "read-write," + MESSAGE_REGION);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        cacheManager.close();
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maximumSize, Duration ttl) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        configuration.setStoreByValue(false);
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.repository;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Callable;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the SQL statements each request executes, and the time spent in them, by
+ * wrapping the DataSource so every Statement it hands out reports its executions
+ * to the StatementStatistics bound to the current thread. Work outside a request
+ * (startup, the write-behind writer) has nothing bound and is not counted.
+ */
+@Component
+public class StatementCounter implements BeanPostProcessor {
+
+    private final ThreadLocal<StatementStatistics> current = new ThreadLocal<>();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof CountingDataSource)) {
+            return new CountingDataSource((DataSource) bean);
+        }
+        return bean;
+    }
+
+    /**
+     * @return the statistics bound to this thread, null outside a request
+     */
+    public StatementStatistics current() {
+        return current.get();
+    }
+
+    /**
+     * Bind statistics to this thread until {@link #unbind()}.
+     */
+    public void bind(StatementStatistics statistics) {
+        current.set(statistics);
+    }
+
+    public void unbind() {
+        current.remove();
+    }
+
+    /**
+     * Carry this thread's statistics over to work that will run on another thread.
+     *
+     * @param work the work
+     * @return work that binds the statistics while it runs
+     */
+    public <T> Callable<T> propagate(Callable<T> work) {
+        StatementStatistics statistics = current.get();
+        if (statistics == null) {
+            return work;
+        }
+
+        return () -> {
+            StatementStatistics previous = current.get();
+            current.set(statistics);
+            try {
+                return work.call();
+            } finally {
+                current.set(previous);
+            }
+        };
+    }
+
+    private class CountingDataSource extends DelegatingDataSource {
+
+        CountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return wrapConnection(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return wrapConnection(super.getConnection(username, password));
+        }
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return proxy(Connection.class, (method, args) -> {
+            Object result = invoke(connection, method, args);
+            switch (method.getName()) {
+                case "createStatement":
+                    return wrapStatement(Statement.class, (Statement) result);
+                case "prepareStatement":
+                    return wrapStatement(PreparedStatement.class, (PreparedStatement) result);
+                case "prepareCall":
+                    return wrapStatement(CallableStatement.class, (CallableStatement) result);
+                default:
+                    return result;
+            }
+        });
+    }
+
+    /**
+     * Time and count every execute* call; a JDBC batch is one round trip and counts once.
+     */
+    private <S extends Statement> S wrapStatement(Class<S> type, S statement) {
+        return proxy(type, (method, args) -> {
+            StatementStatistics statistics = method.getName().startsWith("execute") ? current.get() : null;
+            if (statistics == null) {
+                return invoke(statement, method, args);
+            }
+
+            long start = System.nanoTime();
+            try {
+                return invoke(statement, method, args);
+            } finally {
+                statistics.record(System.nanoTime() - start);
+            }
+        });
+    }
+
+    /**
+     * Proxy a JDBC interface. Proxies are only equal to themselves, so they still
+     * work as keys in the maps Hibernate tracks its statements in.
+     */
+    private static <T> T proxy(Class<T> type, Invocation invocation) {
+        return type.cast(Proxy.newProxyInstance(StatementCounter.class.getClassLoader(), new Class<?>[] {type},
+            (proxy, method, args) -> method.getName().equals("equals") ? proxy == args[0] : invocation.invoke(method, args)));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private interface Invocation {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.repository;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The SQL statements one request has executed so far and the time spent in them.
+ * Updated from whichever thread runs the request's database work.
+ */
+public class StatementStatistics {
+
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicLong nanos = new AtomicLong();
+    private volatile String endpoint;
+
+    void record(long elapsedNanos) {
+        count.incrementAndGet();
+        nanos.addAndGet(elapsedNanos);
+    }
+
+    /**
+     * @return the number of statements executed; a JDBC batch counts once
+     */
+    public int getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the total time spent executing statements, in nanoseconds
+     */
+    public long getNanos() {
+        return nanos.get();
+    }
+
+    /**
+     * @return the name of the endpoint the statements ran for, null if not known
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+}
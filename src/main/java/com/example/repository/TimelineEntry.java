@@ -0,0 +1,55 @@
+package com.example.repository;
+
+import java.util.Comparator;
+
+import com.example.entity.Message;
+
+/**
+ * One message in one account's home timeline. Entries are ordered newest first,
+ * ties broken by message_id, the same order as the per-account message listings;
+ * a message without a time sorts last.
+ */
+public class TimelineEntry {
+
+    public static final Comparator<TimelineEntry> NEWEST_FIRST = Comparator
+        .comparingLong(TimelineEntry::getTime_posted_epoch).reversed()
+        .thenComparingInt(TimelineEntry::getMessage_id);
+
+    private final int account_id;
+    private final int message_id;
+    private final int posted_by;
+    private final long time_posted_epoch;
+
+    public TimelineEntry(int account_id, int message_id, int posted_by, long time_posted_epoch) {
+        this.account_id = account_id;
+        this.message_id = message_id;
+        this.posted_by = posted_by;
+        this.time_posted_epoch = time_posted_epoch;
+    }
+
+    /**
+     * @param account_id the account whose timeline the message goes into
+     * @param message the message
+     * @return the entry for the message
+     */
+    public static TimelineEntry of(int account_id, Message message) {
+        Long time = message.getTime_posted_epoch();
+        return new TimelineEntry(account_id, message.getMessage_id(), message.getPosted_by(), time == null ? Long.MIN_VALUE : time);
+    }
+
+    public int getAccount_id() {
+        return account_id;
+    }
+
+    public int getMessage_id() {
+        return message_id;
+    }
+
+    public int getPosted_by() {
+        return posted_by;
+    }
+
+    public long getTime_posted_epoch() {
+        return time_posted_epoch;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.repository.AccountRepository;
+
+/**
+ * In-memory set of every account_id, kept as a sparse bitmap of 64k-id pages so
+ * membership is a couple of array reads with no boxing. Lets message creation
+ * check posted_by without loading the Account; the message.posted_by foreign key
+ * remains the backstop.
+ *
+ * Until it has been loaded from the account table, lookups fall through to the
+ * database.
+ */
+@Component
+public class AccountIdIndex {
+
+    private static final int PAGE_BITS = 16;
+    private static final int WORDS_PER_PAGE = (1 << PAGE_BITS) / 64;
+
+    private final Logger logger = LoggerFactory.getLogger(AccountIdIndex.class);
+
+    private final AccountRepository accountRepository;
+    private final ConcurrentHashMap<Integer, AtomicLongArray> pages = new ConcurrentHashMap<>();
+    private final AtomicLong size = new AtomicLong();
+    private volatile boolean loaded = false;
+
+    public AccountIdIndex(AccountRepository accountRepository) {
+        this.accountRepository = accountRepository;
+    }
+
+    /**
+     * Load every existing account_id once the schema and seed data are in place.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        try (Stream<Integer> accountIds = accountRepository.streamAllAccountIds()) {
+            accountIds.forEach(this::add);
+        }
+
+        loaded = true;
+        logger.info("Account id index loaded: {} ids in {} pages", size.get(), pages.size());
+    }
+
+    /**
+     * Check whether an account exists.
+     *
+     * @param accountId the account_id to look for
+     * @return true if the account exists
+     */
+    public boolean contains(Integer accountId) {
+        if (accountId == null) {
+            return false;
+        }
+
+        if (!loaded) {
+            return accountRepository.existsById(accountId);
+        }
+
+        AtomicLongArray page = pages.get(accountId >> PAGE_BITS);
+        if (page == null) {
+            return false;
+        }
+
+        int bit = accountId & ((1 << PAGE_BITS) - 1);
+        return (page.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    /**
+     * Record a newly created account.
+     *
+     * @param accountId the account_id to add
+     */
+    public void add(Integer accountId) {
+        AtomicLongArray page = pages.computeIfAbsent(accountId >> PAGE_BITS, key -> new AtomicLongArray(WORDS_PER_PAGE));
+        int bit = accountId & ((1 << PAGE_BITS) - 1);
+        int word = bit >>> 6;
+        long mask = 1L << bit;
+        long current;
+        while (((current = page.get(word)) & mask) == 0) {
+            if (page.compareAndSet(word, current, current | mask)) {
+                size.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true once the index holds every account_id, so a miss is authoritative
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return the number of account ids in the index
+     */
+    public long getSize() {
+        return size.get();
+    }
+}
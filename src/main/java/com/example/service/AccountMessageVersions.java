@@ -0,0 +1,49 @@
+package com.example.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+import com.example.entity.Message;
+
+/**
+ * In-memory change versions of every account's message list, behind the ETags of
+ * GET /accounts/{id}/messages, so a conditional request is answered without a query.
+ *
+ * A version is bumped once the transaction that created, updated or deleted one of
+ * the account's messages commits. Readers take the version before their page, so a
+ * response can carry an older version than its content, never a newer one. The
+ * versions start over at every startup, and the startup time is part of them so an
+ * ETag from before a restart never matches. Single message versions, which start
+ * over with the in-memory database, carry the same startup time.
+ */
+@Component
+public class AccountMessageVersions {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final ConcurrentHashMap<Integer, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    /**
+     * @return the current version of the account's message list
+     */
+    public String get(Integer account_id) {
+        AtomicLong version = versions.get(account_id);
+        return epoch + "-" + (version == null ? 0 : version.get());
+    }
+
+    /**
+     * @return the version of a single message, unique across messages and restarts
+     */
+    public String getMessageVersion(Message message) {
+        return epoch + "-" + message.getMessage_id() + "-" + message.getVersion();
+    }
+
+    /**
+     * Move the account's message list to a new version once the current transaction
+     * commits.
+     */
+    public void bump(Integer account_id) {
+        AfterCommit.run(() -> versions.computeIfAbsent(account_id, key -> new AtomicLong()).incrementAndGet());
+    }
+}
@@ -4,7 +4,9 @@ import java.util.Optional;
 
 import javax.swing.text.html.Option;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,11 +19,24 @@ import com.example.repository.AccountRepository;
 @Service
 public class AccountService {
 
+    static final String USERNAME_UNIQUE_CONSTRAINT = "ACCOUNT_USERNAME_KEY";
+
     private final AccountRepository accountRepository;
+    private final UsernameBloomFilter usernameFilter;
+    private final AccountIdIndex accountIdIndex;
+    private final AccountUsernameCache usernameCache;
 
     @Autowired
-    public AccountService(AccountRepository accountRepository) {
+    public AccountService(
+        AccountRepository accountRepository,
+        UsernameBloomFilter usernameFilter,
+        AccountIdIndex accountIdIndex,
+        AccountUsernameCache usernameCache
+    ) {
         this.accountRepository = accountRepository;
+        this.usernameFilter = usernameFilter;
+        this.accountIdIndex = accountIdIndex;
+        this.usernameCache = usernameCache;
     }
 
     /**
@@ -31,6 +46,10 @@ public class AccountService {
      * - Password is at least 4 characters long.
      * - Username is unique within our database.
      * 
+     * Uniqueness is enforced by the account_username_key constraint alone, so the
+     * account is created with a single INSERT and concurrent registrations of the
+     * same username cannot both succeed.
+     * 
      * @param account the account to create
      * @return the newly created account upon success
      * @throws AccountException if a validation check failed
@@ -45,12 +64,23 @@ public class AccountService {
             throw new AccountException("Password must be at least 4 characters long");
         }
 
-        Optional<Account> existingAccount = accountRepository.findAccountByUsername(account.getUsername());
-        if (existingAccount.isPresent()) {
-            throw new AccountAlreadyExistsException("An account with the provided username already exists");
+        // A new account never carries an id; one would turn the save into a merge and add a SELECT.
+        account.setAccount_id(null);
+
+        Account createdAccount;
+        try {
+            createdAccount = accountRepository.saveAndFlush(account);
+        } catch (DataIntegrityViolationException ex) {
+            if (isUsernameConflict(ex)) {
+                throw new AccountAlreadyExistsException("An account with the provided username already exists");
+            }
+
+            throw ex;
         }
 
-        return accountRepository.save(account);
+        usernameFilter.put(createdAccount.getUsername());
+        accountIdIndex.add(createdAccount.getAccount_id());
+        return createdAccount;
     }
 
     /**
@@ -59,13 +89,40 @@ public class AccountService {
      * - Account with username exists
      * - Provided passwords fully match
      * 
+     * A username seen before is read by its cached account_id, which the second-level
+     * cache answers without a statement; any other is looked up by username. The
+     * username filter is only consulted to measure its false positive rate: an account
+     * it has not seen, such as one inserted straight into the table, can still log in
+     * and is added to it.
+     * 
      * @param account the account to authenticate
      * @return an empty if the authnetication failed, a present account if the authentication was successful
      */
     public Optional<Account> authenticate(Account account) {
-        Optional<Account> existingAccount = accountRepository.findAccountByUsername(account.getUsername());
+        if (account.getUsername() == null) {
+            return Optional.empty();
+        }
 
-        if (existingAccount.isEmpty()) return Optional.empty();
+        boolean mightContain = usernameFilter.mightContain(account.getUsername());
+        Integer accountId = usernameCache.get(account.getUsername());
+        Optional<Account> existingAccount = accountId != null
+            ? accountRepository.findById(accountId)
+            : accountRepository.findAccountByUsername(account.getUsername());
+
+        if (existingAccount.isEmpty()) {
+            if (mightContain) {
+                usernameFilter.recordFalsePositive();
+            }
+            return Optional.empty();
+        }
+
+        if (!mightContain) {
+            usernameFilter.put(account.getUsername());
+        }
+
+        if (accountId == null) {
+            usernameCache.put(account.getUsername(), existingAccount.get().getAccount_id());
+        }
 
         if (!existingAccount.get().getPassword().equals(account.getPassword())) {
             return Optional.empty();
@@ -73,4 +130,19 @@ public class AccountService {
 
         return existingAccount;
     }
+
+    /**
+     * Check whether an integrity violation was caused by the username unique constraint.
+     * 
+     * @param ex the integrity violation raised by the INSERT
+     * @return true if the username is already taken
+     */
+    private boolean isUsernameConflict(DataIntegrityViolationException ex) {
+        if (!(ex.getCause() instanceof ConstraintViolationException)) {
+            return false;
+        }
+
+        String constraintName = ((ConstraintViolationException) ex.getCause()).getConstraintName();
+        return constraintName != null && constraintName.toUpperCase().contains(USERNAME_UNIQUE_CONSTRAINT);
+    }
 }
@@ -0,0 +1,115 @@
+package com.example.service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.repository.AccountStats;
+import com.example.repository.AccountStatsRepository;
+
+/**
+ * Periodically recomputes the per-account message counters from the message table,
+ * logs every account whose counters had drifted and corrects them. Drift means a
+ * write reached the message table without going through the counters, e.g. a
+ * manual fix or a bulk load.
+ *
+ * One aggregate query finds the candidates; each is then recomputed under its
+ * account row lock, which message inserts and deletes also take, so a write that
+ * raced the aggregate is not mistaken for drift.
+ */
+@Component
+public class AccountStatsReconciler {
+
+    private final Logger logger = LoggerFactory.getLogger(AccountStatsReconciler.class);
+
+    private final AccountStatsRepository accountStatsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration interval;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong driftedAccounts = new AtomicLong();
+
+    public AccountStatsReconciler(
+        AccountStatsRepository accountStatsRepository,
+        PlatformTransactionManager transactionManager,
+        @Value("${social-media.accounts.stats.reconcile-interval:1h}") Duration interval
+    ) {
+        this.accountStatsRepository = accountStatsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.interval = interval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "account-stats-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                reconcile();
+            } catch (RuntimeException ex) {
+                logger.warn("Account stats reconciliation failed: {}", ex.getMessage());
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Recompute every account's counters and correct the ones that drifted.
+     *
+     * @return the number of accounts whose counters were corrected
+     */
+    public int reconcile() {
+        int drifted = 0;
+        for (Integer account_id : accountStatsRepository.findDriftCandidates()) {
+            if (transactionTemplate.execute(status -> correct(account_id))) {
+                drifted++;
+            }
+        }
+
+        driftedAccounts.addAndGet(drifted);
+        logger.info("Account stats reconciled: {} accounts had drifted", drifted);
+        return drifted;
+    }
+
+    /**
+     * @return the number of accounts corrected since startup
+     */
+    public long getDriftedAccounts() {
+        return driftedAccounts.get();
+    }
+
+    private boolean correct(Integer account_id) {
+        Optional<AccountStats> stored = accountStatsRepository.findByIdForUpdate(account_id);
+        if (stored.isEmpty()) {
+            return false;
+        }
+
+        AccountStats actual = accountStatsRepository.compute(account_id);
+        if (actual.equals(stored.get())) {
+            return false;
+        }
+
+        logger.warn("Account {} stats drifted: stored {}, actual {}", account_id, stored.get(), actual);
+        accountStatsRepository.save(actual);
+        return true;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.service;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Bounded cache of account_id by username, so a repeated login reads the account
+ * by id from the second-level cache instead of querying by username. Accounts are
+ * never renamed or deleted, so an entry never goes stale and new registrations
+ * leave it alone, unlike Hibernate's query cache, which drops every cached lookup
+ * whenever the account table changes. Unknown usernames are not cached; the
+ * username filter already turns most of those away.
+ */
+@Component
+public class AccountUsernameCache {
+
+    private final Cache<String, Integer> cache;
+
+    public AccountUsernameCache(
+        @Value("${social-media.accounts.second-level-cache.maximum-size:1000000}") long maximumSize,
+        @Value("${social-media.accounts.second-level-cache.ttl:1h}") Duration ttl
+    ) {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * @param username the username of the account
+     * @return the account_id, or null if the username is not cached
+     */
+    public Integer get(String username) {
+        return cache.getIfPresent(username);
+    }
+
+    /**
+     * Record the account_id of an existing account.
+     *
+     * @param username the username of the account
+     * @param accountId the account_id of the account
+     */
+    public void put(String username, Integer accountId) {
+        cache.put(username, accountId);
+    }
+
+    /**
+     * @return the hit, miss and eviction counters of the cache
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the approximate number of cached entries
+     */
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+/**
+ * A response body serialized once as UTF-8 JSON, kept on or off heap by
+ * MessageJsonCache and written out as is on every hit.
+ */
+public class CachedJson {
+
+    private final ByteBuffer json;
+    private final String version;
+    private final String nextCursor;
+
+    CachedJson(ByteBuffer json, String version, String nextCursor) {
+        this.json = json;
+        this.version = version;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return the version of what was serialized, for its ETag, or null if it has none
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the cursor for the page after this one, or null if it is the last or not a page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @return the length of the JSON in bytes
+     */
+    public int getLength() {
+        return json.remaining();
+    }
+
+    /**
+     * Write the JSON to a stream. Heap buffers are written in one go; direct buffers
+     * are copied through the channel's transfer buffer.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        ByteBuffer buffer = json.duplicate();
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            return;
+        }
+
+        Channels.newChannel(out).write(buffer);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Changes to an in-memory copy of a table that arrive while the copy is still
+ * being loaded. The load reads the table as of some point, so a change committed
+ * after that point would be lost if applied to the half-built copy, or undone when
+ * the load reaches the same row. Such changes are held back and replayed, in the
+ * order they arrived, once the load is done; every change must therefore give the
+ * same result when applied to a copy that already includes it.
+ */
+class ChangesDuringLoad {
+
+    private List<Runnable> pending = new ArrayList<>();
+
+    /**
+     * Apply a change now if the load is done, otherwise hold it until it is.
+     *
+     * @param change the change to the in-memory copy
+     */
+    void apply(Runnable change) {
+        synchronized (this) {
+            if (pending != null) {
+                pending.add(change);
+                return;
+            }
+        }
+
+        change.run();
+    }
+
+    /**
+     * Replay the held changes and apply any later ones right away. Changes arriving
+     * during the replay wait for it, so they stay in order.
+     */
+    synchronized void loaded() {
+        for (Runnable change : pending) {
+            change.run();
+        }
+        pending = null;
+    }
+}
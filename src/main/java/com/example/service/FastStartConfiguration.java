@@ -0,0 +1,24 @@
+package com.example.service;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.actuate.autoconfigure.metrics.jdbc.DataSourcePoolMetricsAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Beans the fast-start profile's lazy initialization must still create eagerly. The
+ * connection pool metrics are bound by configuration that nothing depends on, and a
+ * Hikari pool only takes a meter registry before it starts, so left lazy they would
+ * never be bound.
+ */
+@Configuration
+@Profile("fast-start")
+public class FastStartConfiguration {
+
+    @Bean
+    public static LazyInitializationExcludeFilter eagerConnectionPoolMetrics() {
+        return (beanName, beanDefinition, beanType) ->
+            beanType != null && beanType.getName().startsWith(DataSourcePoolMetricsAutoConfiguration.class.getName());
+    }
+}
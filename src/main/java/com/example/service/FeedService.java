@@ -0,0 +1,254 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.entity.Message;
+import com.example.exception.FeedUnavailableException;
+import com.example.repository.FollowRepository;
+import com.example.repository.MessageRepository;
+import com.example.repository.TimelineEntry;
+import com.example.repository.TimelineRepository;
+
+/**
+ * Follows and home feeds. A new message is pushed into the home timeline of every
+ * follower of its author (fan-out on write), so reading a feed is a slice of the
+ * reader's timeline plus a primary-key lookup of those messages.
+ *
+ * Authors with more than {@code social-media.feed.celebrity-threshold} followers
+ * are not fanned out, since one post would write that many entries; their newest
+ * messages are read from message_posted_by_time_idx and merged in when a follower
+ * reads their feed. Whether an author counts as a celebrity is decided by their
+ * follower count at the time, so posts from while an author was over the
+ * threshold are not backfilled if they drop below it.
+ */
+@Service
+public class FeedService {
+
+    private final FollowRepository followRepository;
+    private final TimelineRepository timelineRepository;
+    private final MessageRepository messageRepository;
+    private final AccountIdIndex accountIdIndex;
+    private final FollowGraph followGraph;
+    private final HomeTimelines homeTimelines;
+    private final int celebrityThreshold;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public FeedService(
+        FollowRepository followRepository,
+        TimelineRepository timelineRepository,
+        MessageRepository messageRepository,
+        AccountIdIndex accountIdIndex,
+        FollowGraph followGraph,
+        HomeTimelines homeTimelines,
+        @Value("${social-media.feed.celebrity-threshold:10000}") int celebrityThreshold,
+        @Value("${social-media.messages.default-page-size:100}") int defaultPageSize,
+        @Value("${social-media.messages.max-page-size:1000}") int maxPageSize
+    ) {
+        this.followRepository = followRepository;
+        this.timelineRepository = timelineRepository;
+        this.messageRepository = messageRepository;
+        this.accountIdIndex = accountIdIndex;
+        this.followGraph = followGraph;
+        this.homeTimelines = homeTimelines;
+        this.celebrityThreshold = celebrityThreshold;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Follow an account, and fill the follower's timeline with its newest messages
+     * unless it is a celebrity. Following an account twice is a no-op.
+     *
+     * @param follower_id the account that follows
+     * @param followee_id the account to follow
+     * @return false if either account does not exist or they are the same account
+     */
+    @Transactional
+    public boolean follow(Integer follower_id, Integer followee_id) {
+        if (follower_id.equals(followee_id) || !accountIdIndex.contains(follower_id) || !accountIdIndex.contains(followee_id)) {
+            return false;
+        }
+
+        if (followGraph.follows(follower_id, followee_id) || !followRepository.save(follower_id, followee_id)) {
+            return true;
+        }
+
+        // The graph only changes once this commits, so count the new follower here.
+        boolean celebrity = followGraph.getFollowerCount(followee_id) + 1 > celebrityThreshold;
+        followGraph.add(follower_id, followee_id);
+        if (!celebrity) {
+            List<TimelineEntry> entries = new ArrayList<>();
+            for (Message message : messageRepository.findFirstPageByPostedBy(
+                followee_id, PageRequest.of(0, homeTimelines.getCapacity())
+            )) {
+                entries.add(TimelineEntry.of(follower_id, message));
+            }
+            push(entries);
+        }
+        return true;
+    }
+
+    /**
+     * Stop following an account and drop its messages from the follower's timeline.
+     *
+     * @param follower_id the account that follows
+     * @param followee_id the account to stop following
+     * @return true if the follow existed
+     */
+    @Transactional
+    public boolean unfollow(Integer follower_id, Integer followee_id) {
+        if (!followRepository.delete(follower_id, followee_id)) {
+            return false;
+        }
+
+        timelineRepository.deleteByAccountIdAndPostedBy(follower_id, followee_id);
+        followGraph.remove(follower_id, followee_id);
+        homeTimelines.removeAuthor(follower_id, followee_id);
+        return true;
+    }
+
+    /**
+     * Push newly created messages into their authors' followers' timelines, in one
+     * batch insert and at most one batch delete of the entries that no longer fit.
+     *
+     * @param messages the created messages
+     */
+    @Transactional
+    public void fanOut(List<Message> messages) {
+        List<TimelineEntry> entries = new ArrayList<>();
+        for (Message message : messages) {
+            if (isCelebrity(message.getPosted_by())) {
+                continue;
+            }
+
+            for (Integer follower_id : followGraph.getFollowers(message.getPosted_by())) {
+                entries.add(TimelineEntry.of(follower_id, message));
+            }
+        }
+        push(entries);
+    }
+
+    /**
+     * Get a page of an account's home feed: messages from the accounts it follows,
+     * newest first, ties broken by message_id.
+     *
+     * @param id the id of the reading account
+     * @param limit the requested page size, null for the default; clamped to the max page size
+     * @param after the cursor returned with the previous page, null for the first page
+     * @return empty if the limit or cursor is invalid, present page otherwise
+     * @throws FeedUnavailableException if the follow graph or timelines are still loading at startup
+     */
+    public Optional<MessagePage> getFeed(Integer id, Integer limit, String after) throws FeedUnavailableException {
+        if (limit == null) {
+            limit = defaultPageSize;
+        }
+
+        if (limit < 1) {
+            return Optional.empty();
+        }
+
+        MessageCursor cursor = null;
+        if (after != null) {
+            Optional<MessageCursor> decoded = MessageCursor.decode(after).filter(c -> c.getTime_posted_epoch() != null);
+            if (decoded.isEmpty()) {
+                return Optional.empty();
+            }
+            cursor = decoded.get();
+        }
+
+        if (!followGraph.isLoaded() || !homeTimelines.isLoaded()) {
+            throw new FeedUnavailableException("The home timelines are still loading");
+        }
+
+        int pageSize = Math.min(limit, maxPageSize);
+        List<TimelineEntry> candidates = new ArrayList<>(homeTimelines.page(id, cursor, pageSize + 1));
+        Map<Integer, Message> messages = new HashMap<>();
+        for (Integer followee_id : followGraph.getFollowing(id)) {
+            if (isCelebrity(followee_id)) {
+                for (Message message : celebrityMessages(followee_id, cursor, pageSize + 1)) {
+                    messages.put(message.getMessage_id(), message);
+                    candidates.add(TimelineEntry.of(id, message));
+                }
+            }
+        }
+
+        // A celebrity's message can also be in the timeline from before it crossed the threshold.
+        candidates.sort(TimelineEntry.NEWEST_FIRST);
+        Map<Integer, TimelineEntry> page = new LinkedHashMap<>();
+        for (TimelineEntry entry : candidates) {
+            if (page.size() == pageSize + 1) {
+                break;
+            }
+            page.putIfAbsent(entry.getMessage_id(), entry);
+        }
+
+        List<TimelineEntry> entries = new ArrayList<>(page.values());
+        boolean hasNext = entries.size() > pageSize;
+        if (hasNext) {
+            entries = entries.subList(0, pageSize);
+        }
+
+        List<Integer> missing = new ArrayList<>();
+        for (TimelineEntry entry : entries) {
+            if (!messages.containsKey(entry.getMessage_id())) {
+                missing.add(entry.getMessage_id());
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Message message : messageRepository.findAllById(missing)) {
+                messages.put(message.getMessage_id(), message);
+            }
+        }
+
+        List<Message> feed = new ArrayList<>(entries.size());
+        for (TimelineEntry entry : entries) {
+            Message message = messages.get(entry.getMessage_id());
+            if (message == null) {
+                // Deleted since it was fanned out; the table row went with the message.
+                homeTimelines.remove(entry);
+                continue;
+            }
+            feed.add(message);
+        }
+
+        TimelineEntry last = hasNext ? entries.get(pageSize - 1) : null;
+        return Optional.of(new MessagePage(
+            feed, last == null ? null : new MessageCursor(last.getTime_posted_epoch(), last.getMessage_id()).encode()
+        ));
+    }
+
+    private boolean isCelebrity(Integer account_id) {
+        return followGraph.getFollowerCount(account_id) > celebrityThreshold;
+    }
+
+    private List<Message> celebrityMessages(Integer account_id, MessageCursor after, int count) {
+        PageRequest pageRequest = PageRequest.of(0, count);
+        if (after == null) {
+            return messageRepository.findFirstPageByPostedBy(account_id, pageRequest);
+        }
+
+        return messageRepository.findPageByPostedByAfter(
+            account_id, after.getTime_posted_epoch(), after.getMessage_id(), pageRequest
+        );
+    }
+
+    /**
+     * Write entries to the table, and add them to the in-memory timelines once that
+     * commits.
+     */
+    private void push(List<TimelineEntry> entries) {
+        timelineRepository.saveAll(entries);
+        homeTimelines.addAll(entries);
+    }
+}
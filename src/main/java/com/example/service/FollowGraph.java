@@ -0,0 +1,117 @@
+package com.example.service;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.example.repository.FollowRepository;
+
+/**
+ * In-memory copy of the follow table, indexed both ways, so fan-out on write and
+ * feed reads never query it. Loaded from the table at startup; follows and
+ * unfollows are applied once their transaction commits, and those committed while
+ * the graph is being loaded are replayed after the load.
+ */
+@Component
+public class FollowGraph {
+
+    private final Logger logger = LoggerFactory.getLogger(FollowGraph.class);
+
+    private final FollowRepository followRepository;
+    private final ConcurrentHashMap<Integer, Set<Integer>> followers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Set<Integer>> following = new ConcurrentHashMap<>();
+    private final AtomicLong size = new AtomicLong();
+    private final ChangesDuringLoad changesDuringLoad = new ChangesDuringLoad();
+    private volatile boolean loaded = false;
+
+    public FollowGraph(FollowRepository followRepository) {
+        this.followRepository = followRepository;
+    }
+
+    /**
+     * Load every follow once the schema and seed data are in place.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        followRepository.findAll(this::put);
+        changesDuringLoad.loaded();
+        loaded = true;
+        logger.info("Follow graph loaded: {} follows", size.get());
+    }
+
+    /**
+     * @return true once every follow has been loaded
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public boolean follows(Integer follower_id, Integer followee_id) {
+        return getFollowing(follower_id).contains(followee_id);
+    }
+
+    /**
+     * @return a live, unmodifiable view of the accounts following the account
+     */
+    public Set<Integer> getFollowers(Integer account_id) {
+        Set<Integer> accounts = followers.get(account_id);
+        return accounts == null ? Set.of() : Collections.unmodifiableSet(accounts);
+    }
+
+    /**
+     * @return a live, unmodifiable view of the accounts the account follows
+     */
+    public Set<Integer> getFollowing(Integer account_id) {
+        Set<Integer> accounts = following.get(account_id);
+        return accounts == null ? Set.of() : Collections.unmodifiableSet(accounts);
+    }
+
+    public int getFollowerCount(Integer account_id) {
+        Set<Integer> accounts = followers.get(account_id);
+        return accounts == null ? 0 : accounts.size();
+    }
+
+    /**
+     * Record a follow once the current transaction commits.
+     */
+    public void add(Integer follower_id, Integer followee_id) {
+        AfterCommit.run(() -> changesDuringLoad.apply(() -> put(follower_id, followee_id)));
+    }
+
+    /**
+     * Drop a follow once the current transaction commits.
+     */
+    public void remove(Integer follower_id, Integer followee_id) {
+        AfterCommit.run(() -> changesDuringLoad.apply(() -> {
+            Set<Integer> accounts = following.get(follower_id);
+            if (accounts != null && accounts.remove(followee_id)) {
+                size.decrementAndGet();
+            }
+            accounts = followers.get(followee_id);
+            if (accounts != null) {
+                accounts.remove(follower_id);
+            }
+        }));
+    }
+
+    /**
+     * @return the number of follows in the graph
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    private void put(Integer follower_id, Integer followee_id) {
+        if (following.computeIfAbsent(follower_id, key -> ConcurrentHashMap.newKeySet()).add(followee_id)) {
+            size.incrementAndGet();
+        }
+        followers.computeIfAbsent(followee_id, key -> ConcurrentHashMap.newKeySet()).add(follower_id);
+    }
+}
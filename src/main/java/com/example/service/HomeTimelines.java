@@ -0,0 +1,186 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.repository.TimelineEntry;
+import com.example.repository.TimelineRepository;
+
+/**
+ * Bounded, in-memory home timelines: for each account, the newest messages of the
+ * accounts it follows, filled in as they are posted. Each timeline keeps at most
+ * {@code social-media.feed.timeline-size} entries and drops the oldest beyond that.
+ *
+ * The timeline_entry table holds the same entries so the timelines survive a
+ * restart. Callers write there in their transaction, and the change is applied
+ * here once it commits, so a feed never shows an entry that could still roll back.
+ * The entries a commit pushes out of a timeline are only known then, so they are
+ * deleted from the table in a transaction of their own. Changes committed while
+ * the timelines are being loaded are replayed after the load.
+ */
+@Component
+public class HomeTimelines {
+
+    private final Logger logger = LoggerFactory.getLogger(HomeTimelines.class);
+
+    private final TimelineRepository timelineRepository;
+    private final TransactionTemplate evictionTransaction;
+    private final int capacity;
+    private final ConcurrentHashMap<Integer, NavigableSet<TimelineEntry>> timelines = new ConcurrentHashMap<>();
+    private final ChangesDuringLoad changesDuringLoad = new ChangesDuringLoad();
+    private volatile boolean loaded = false;
+
+    public HomeTimelines(
+        TimelineRepository timelineRepository,
+        PlatformTransactionManager transactionManager,
+        @Value("${social-media.feed.timeline-size:800}") int capacity
+    ) {
+        this.timelineRepository = timelineRepository;
+        this.evictionTransaction = new TransactionTemplate(transactionManager);
+        this.evictionTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Load every timeline from the table once the schema and seed data are in place,
+     * deleting whatever no longer fits if the timeline size was lowered.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        List<TimelineEntry> evicted = new ArrayList<>();
+        timelineRepository.findAll(entry -> {
+            TimelineEntry dropped = add(entry);
+            if (dropped != null) {
+                evicted.add(dropped);
+            }
+        });
+        timelineRepository.deleteAll(evicted);
+
+        changesDuringLoad.loaded();
+        loaded = true;
+        logger.info("Home timelines loaded: {} timelines, {} evicted entries", timelines.size(), evicted.size());
+    }
+
+    /**
+     * @return true once every timeline has been loaded
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return the most entries a timeline keeps
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Add entries to their accounts' timelines once the current transaction commits,
+     * then delete the entries they pushed out from the table.
+     *
+     * @param entries the entries, already written to the table
+     */
+    public void addAll(List<TimelineEntry> entries) {
+        AfterCommit.run(() -> changesDuringLoad.apply(() -> {
+            List<TimelineEntry> evicted = new ArrayList<>();
+            for (TimelineEntry entry : entries) {
+                TimelineEntry dropped = add(entry);
+                if (dropped != null) {
+                    evicted.add(dropped);
+                }
+            }
+
+            if (!evicted.isEmpty()) {
+                evictionTransaction.executeWithoutResult(status -> timelineRepository.deleteAll(evicted));
+            }
+        }));
+    }
+
+    /**
+     * Add an entry to its account's timeline.
+     *
+     * @param entry the entry
+     * @return the entry dropped to make room, null if nothing was dropped
+     */
+    private TimelineEntry add(TimelineEntry entry) {
+        NavigableSet<TimelineEntry> timeline = timelines.computeIfAbsent(
+            entry.getAccount_id(), key -> new TreeSet<>(TimelineEntry.NEWEST_FIRST)
+        );
+        synchronized (timeline) {
+            if (!timeline.add(entry) || timeline.size() <= capacity) {
+                return null;
+            }
+            return timeline.pollLast();
+        }
+    }
+
+    /**
+     * Drop an entry, e.g. one whose message has since been deleted.
+     */
+    public void remove(TimelineEntry entry) {
+        NavigableSet<TimelineEntry> timeline = timelines.get(entry.getAccount_id());
+        if (timeline != null) {
+            synchronized (timeline) {
+                timeline.remove(entry);
+            }
+        }
+    }
+
+    /**
+     * Drop every message of one author from an account's timeline once the current
+     * transaction commits.
+     */
+    public void removeAuthor(Integer account_id, Integer posted_by) {
+        AfterCommit.run(() -> changesDuringLoad.apply(() -> {
+            NavigableSet<TimelineEntry> timeline = timelines.get(account_id);
+            if (timeline != null) {
+                synchronized (timeline) {
+                    timeline.removeIf(entry -> entry.getPosted_by() == posted_by);
+                }
+            }
+        }));
+    }
+
+    /**
+     * Read entries from an account's timeline, newest first.
+     *
+     * @param account_id the account
+     * @param after the cursor of the previous page, null to start from the newest entry
+     * @param count the maximum number of entries
+     * @return the entries after the cursor
+     */
+    public List<TimelineEntry> page(Integer account_id, MessageCursor after, int count) {
+        NavigableSet<TimelineEntry> timeline = timelines.get(account_id);
+        if (timeline == null) {
+            return List.of();
+        }
+
+        List<TimelineEntry> entries = new ArrayList<>(Math.min(count, capacity));
+        synchronized (timeline) {
+            NavigableSet<TimelineEntry> tail = after == null
+                ? timeline
+                : timeline.tailSet(new TimelineEntry(account_id, after.getMessage_id(), 0, after.getTime_posted_epoch()), false);
+            for (TimelineEntry entry : tail) {
+                if (entries.size() == count) {
+                    break;
+                }
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+}
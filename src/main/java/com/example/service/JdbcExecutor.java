@@ -0,0 +1,165 @@
+package com.example.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.example.repository.StatementCounter;
+import com.example.repository.StatementStatistics;
+
+/**
+ * Runs request work that needs a database connection. In async mode the work goes
+ * to a dedicated pool sized to the connection pool, so a slow database ties up
+ * these threads rather than the servlet container's; when every thread is busy
+ * and the bounded queue is full, new work is rejected immediately instead of
+ * waiting. Each endpoint has its own timeout, from
+ * social-media.async.timeouts.&lt;endpoint&gt; or the default timeout. The timeout
+ * only applies while the work waits in the queue: work that has not started by
+ * then is dropped, so a timed out write never takes effect, and work that has
+ * started runs to the end. A queue capacity of 0 hands work straight to a free
+ * thread or rejects it, so no work ever waits and the timeouts never apply.
+ *
+ * With async mode off the work runs on the calling thread and the returned future
+ * is already complete. Either way the request's statement statistics are labelled
+ * with the endpoint and follow the work onto whichever thread runs it.
+ */
+@Component
+public class JdbcExecutor {
+
+    private final Environment environment;
+    private final StatementCounter statementCounter;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor timer;
+    private final Duration defaultTimeout;
+    private final Map<String, Duration> timeouts = new ConcurrentHashMap<>();
+
+    public JdbcExecutor(
+        Environment environment,
+        StatementCounter statementCounter,
+        @Value("${social-media.async.enabled:false}") boolean enabled,
+        @Value("${social-media.async.pool-size:${spring.datasource.hikari.maximum-pool-size:10}}") int poolSize,
+        @Value("${social-media.async.queue-capacity:20}") int queueCapacity,
+        @Value("${social-media.async.default-timeout:5s}") Duration defaultTimeout
+    ) {
+        this.environment = environment;
+        this.statementCounter = statementCounter;
+        this.defaultTimeout = defaultTimeout;
+
+        if (!enabled) {
+            this.executor = null;
+            this.timer = null;
+            return;
+        }
+
+        BlockingQueue<Runnable> queue = queueCapacity > 0
+            ? new ArrayBlockingQueue<>(queueCapacity)
+            : new SynchronousQueue<>();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.SECONDS, queue, runnable -> {
+            Thread thread = new Thread(runnable, "jdbc-executor-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "jdbc-executor-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * Run work for an endpoint.
+     *
+     * @param endpoint the endpoint name, used to look up its timeout
+     * @param work the work to run
+     * @return completes with the work's result; fails with RejectedExecutionException if the pool
+     *         is full, or TimeoutException if the endpoint's timeout passes before the work starts,
+     *         in which case it never runs
+     */
+    public <T> CompletableFuture<T> call(String endpoint, Callable<T> work) {
+        StatementStatistics statistics = statementCounter.current();
+        if (statistics != null) {
+            statistics.setEndpoint(endpoint);
+        }
+
+        if (executor == null) {
+            try {
+                return CompletableFuture.completedFuture(work.call());
+            } catch (Exception ex) {
+                return CompletableFuture.failedFuture(ex);
+            }
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Callable<T> propagated = statementCounter.propagate(work);
+        // Claimed by whichever comes first: a thread starting the work, or the timeout.
+        AtomicBoolean claimed = new AtomicBoolean();
+        Runnable task = () -> {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                result.complete(propagated.call());
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+
+        Duration timeout = timeout(endpoint);
+        ScheduledFuture<?> expiry = timer.schedule(() -> {
+            if (claimed.compareAndSet(false, true)) {
+                executor.remove(task);
+                result.completeExceptionally(new TimeoutException(endpoint + " did not start within " + timeout));
+            }
+        }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+        result.whenComplete((value, ex) -> expiry.cancel(false));
+        return result;
+    }
+
+    /**
+     * @return the number of threads currently running work, 0 with async mode off
+     */
+    public int getActiveCount() {
+        return executor == null ? 0 : executor.getActiveCount();
+    }
+
+    private Duration timeout(String endpoint) {
+        return timeouts.computeIfAbsent(endpoint, key ->
+            environment.getProperty("social-media.async.timeouts." + key, Duration.class, defaultTimeout)
+        );
+    }
+}
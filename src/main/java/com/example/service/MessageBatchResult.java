@@ -0,0 +1,26 @@
+package com.example.service;
+
+import com.example.entity.Message;
+
+/**
+ * The outcome of one item of a batch message creation: the created message with
+ * status 200, or no message with status 400 if the item failed validation.
+ */
+public class MessageBatchResult {
+
+    private final int status;
+    private final Message message;
+
+    public MessageBatchResult(int status, Message message) {
+        this.status = status;
+        this.message = message;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.entity.Message;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Bounded read-through cache of messages by message_id. Missing ids are cached
+ * too, for a shorter time, so repeated lookups of absent messages stay off the
+ * database. Invalidating a message also evicts it from Hibernate's second-level
+ * cache, which does not see the native statements that update and delete messages.
+ */
+@Component
+public class MessageCache {
+
+    private final Cache<Integer, Optional<Message>> cache;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public MessageCache(
+        EntityManagerFactory entityManagerFactory,
+        @Value("${social-media.messages.cache.maximum-size:10000}") long maximumSize,
+        @Value("${social-media.messages.cache.ttl:60s}") Duration ttl,
+        @Value("${social-media.messages.cache.negative-ttl:5s}") Duration negativeTtl
+    ) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(new Expiry<Integer, Optional<Message>>() {
+                @Override
+                public long expireAfterCreate(Integer key, Optional<Message> value, long currentTime) {
+                    return (value.isPresent() ? ttl : negativeTtl).toNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(Integer key, Optional<Message> value, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, value, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(Integer key, Optional<Message> value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * Get a message by id, loading and caching it on a miss. Loads are atomic per
+     * id, so an invalidation racing with a load waits for the load and then removes
+     * whatever it produced.
+     *
+     * @param id the id of the message
+     * @param loader loads the message from the database
+     * @return an empty if not found, present message if exists
+     */
+    public Optional<Message> get(Integer id, Function<Integer, Optional<Message>> loader) {
+        return cache.get(id, key -> loader.apply(key).map(MessageCache::copy));
+    }
+
+    /**
+     * Drop a message from the cache once the current transaction commits, or right
+     * away if there is no transaction.
+     *
+     * @param id the id of the message
+     */
+    public void invalidate(Integer id) {
+        AfterCommit.run(() -> evict(id));
+    }
+
+    /**
+     * Drop a message from the second-level cache first, so a load racing with this
+     * cannot bring the old row back into this one.
+     */
+    private void evict(Integer id) {
+        entityManagerFactory.getCache().evict(Message.class, id);
+        cache.invalidate(id);
+    }
+
+    /**
+     * @return the hit, miss and eviction counters of the cache
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the approximate number of cached entries
+     */
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Cache a detached copy so the cached value never aliases a managed entity.
+     *
+     * @param message the loaded message
+     * @return a copy of the message
+     */
+    private static Message copy(Message message) {
+        Message copy = new Message(
+            message.getMessage_id(),
+            message.getPosted_by(),
+            message.getMessage_text(),
+            message.getTime_posted_epoch()
+        );
+        copy.setVersion(message.getVersion());
+        return copy;
+    }
+}
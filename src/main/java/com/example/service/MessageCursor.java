@@ -0,0 +1,62 @@
+package com.example.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * An opaque keyset cursor pointing at the last message of a page.
+ * Encoded on the wire as url-safe base64 of "time_posted_epoch:message_id".
+ */
+public class MessageCursor {
+
+    private final Long time_posted_epoch;
+    private final Integer message_id;
+
+    public MessageCursor(Long time_posted_epoch, Integer message_id) {
+        this.time_posted_epoch = time_posted_epoch;
+        this.message_id = message_id;
+    }
+
+    public Long getTime_posted_epoch() {
+        return time_posted_epoch;
+    }
+
+    public Integer getMessage_id() {
+        return message_id;
+    }
+
+    /**
+     * Encode the cursor into its opaque string form.
+     *
+     * @return the encoded cursor
+     */
+    public String encode() {
+        String raw = (time_posted_epoch == null ? "" : time_posted_epoch.toString()) + ":" + message_id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor previously produced by {@link #encode()}.
+     *
+     * @param cursor the encoded cursor
+     * @return empty if the cursor is malformed, present cursor otherwise
+     */
+    public static Optional<MessageCursor> decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            if (separator < 0) {
+                return Optional.empty();
+            }
+
+            String time = raw.substring(0, separator);
+            return Optional.of(new MessageCursor(
+                time.isEmpty() ? null : Long.valueOf(time),
+                Integer.valueOf(raw.substring(separator + 1))
+            ));
+        } catch (IllegalArgumentException ex) {
+            return Optional.empty();
+        }
+    }
+}
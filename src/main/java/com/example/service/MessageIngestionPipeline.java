@@ -0,0 +1,208 @@
+package com.example.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.entity.Message;
+import com.example.exception.MessageQueueFullException;
+import com.example.repository.AccountStatsRepository;
+import com.example.repository.MessageRepository;
+
+/**
+ * Write-behind ingestion for new messages. Validated messages are queued and a
+ * single writer thread inserts them in groups, one transaction per group, so many
+ * POST /messages requests share one commit. Each caller's future completes with
+ * the saved message once its group has committed.
+ *
+ * A group is written as soon as it reaches the batch size or the oldest queued
+ * message has waited the max delay, whichever comes first. Its authors' message
+ * counters are updated in the same transaction.
+ */
+@Component
+@ConditionalOnProperty(name = "social-media.messages.ingestion.enabled", havingValue = "true")
+public class MessageIngestionPipeline {
+
+    private final Logger logger = LoggerFactory.getLogger(MessageIngestionPipeline.class);
+
+    private final MessageRepository messageRepository;
+    private final AccountStatsRepository accountStatsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingMessage> queue;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final Thread writer;
+    private final Object submitLock = new Object();
+    private volatile boolean running = true;
+
+    public MessageIngestionPipeline(
+        MessageRepository messageRepository,
+        AccountStatsRepository accountStatsRepository,
+        PlatformTransactionManager transactionManager,
+        @Value("${social-media.messages.ingestion.queue-capacity:10000}") int queueCapacity,
+        @Value("${social-media.messages.ingestion.batch-size:100}") int batchSize,
+        @Value("${social-media.messages.ingestion.max-delay:5ms}") Duration maxDelay
+    ) {
+        this.messageRepository = messageRepository;
+        this.accountStatsRepository = accountStatsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.writer = new Thread(this::run, "message-ingestion-writer");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.start();
+    }
+
+    /**
+     * Stop accepting work, write out everything already queued, then stop the writer.
+     * Taking the submit lock means no message can be queued after the writer's last
+     * look at the queue, where its future would never complete.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        synchronized (submitLock) {
+            running = false;
+        }
+        writer.interrupt();
+        writer.join();
+    }
+
+    /**
+     * Queue an already validated message for the next group commit.
+     *
+     * @param message the message to insert
+     * @return completes with the saved message once its group has committed
+     * @throws MessageQueueFullException if the queue is at capacity
+     */
+    public CompletableFuture<Message> submit(Message message) throws MessageQueueFullException {
+        PendingMessage pending = new PendingMessage(message);
+        synchronized (submitLock) {
+            if (!running || !queue.offer(pending)) {
+                throw new MessageQueueFullException("Message ingestion queue is full");
+            }
+        }
+
+        return pending.result;
+    }
+
+    /**
+     * @return the number of messages waiting to be written
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException ex) {
+                // Shutting down: whatever is left is drained below.
+            }
+
+            if (!running) {
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Block for the first message, then keep collecting until the group is full or
+     * the first message has waited the max delay.
+     */
+    private void collect(List<PendingMessage> batch) throws InterruptedException {
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+
+            PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Insert a group in one transaction. If the group fails, fall back to one
+     * transaction per message so a single bad row only fails its own caller.
+     */
+    private void write(List<PendingMessage> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            messages.add(pending.message);
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                accountStatsRepository.recordPosts(messages);
+                messageRepository.saveAll(messages);
+            });
+        } catch (RuntimeException ex) {
+            logger.warn("Group commit of {} messages failed, retrying individually: {}", batch.size(), ex.getMessage());
+            for (PendingMessage pending : batch) {
+                // The failed group left an id and version behind; without both reset the
+                // message would be merged as an existing row instead of inserted.
+                pending.message.setMessage_id(null);
+                pending.message.setVersion(null);
+                try {
+                    Message saved = transactionTemplate.execute(status -> {
+                        accountStatsRepository.recordPost(pending.message.getPosted_by(), pending.message.getTime_posted_epoch());
+                        return messageRepository.save(pending.message);
+                    });
+                    pending.result.complete(saved);
+                } catch (RuntimeException single) {
+                    pending.result.completeExceptionally(single);
+                }
+            }
+            return;
+        }
+
+        for (PendingMessage pending : batch) {
+            pending.result.complete(pending.message);
+        }
+    }
+
+    private static class PendingMessage {
+        private final Message message;
+        private final CompletableFuture<Message> result = new CompletableFuture<>();
+
+        private PendingMessage(Message message) {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.service;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Bounded cache of the serialized JSON of single messages and of account message
+ * pages, so hot reads skip Jackson and write stored bytes. The bound is the total
+ * size of the JSON, and with off-heap enabled the JSON is kept in direct buffers
+ * outside the Java heap.
+ *
+ * Messages are dropped when they are updated or deleted. Pages are keyed by the
+ * version of the account's message list they were read under, so any create,
+ * update or delete moves the account's readers to new entries; the retired ones
+ * are left for the size bound to evict. Missing messages and rejected pages are
+ * not cached.
+ */
+@Component
+public class MessageJsonCache {
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final boolean offHeap;
+    private final Cache<Object, CachedJson> cache;
+
+    public MessageJsonCache(
+        ObjectMapper objectMapper,
+        @Value("${social-media.messages.json-cache.enabled:true}") boolean enabled,
+        @Value("${social-media.messages.json-cache.maximum-size:64MB}") DataSize maximumSize,
+        @Value("${social-media.messages.json-cache.off-heap:false}") boolean offHeap
+    ) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.offHeap = offHeap;
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maximumSize.toBytes())
+            .weigher((Object key, CachedJson value) -> value.getLength())
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * Get the JSON of a message by id, serializing and caching it on a miss. Like
+     * MessageCache, loads are atomic per id, so an invalidation racing with a load
+     * waits for it and then removes whatever it produced.
+     *
+     * @param id the id of the message
+     * @param loader loads the message
+     * @param version gives the version to store with a loaded message
+     * @return an empty if not found, the message's JSON and version otherwise
+     */
+    public Optional<CachedJson> getMessage(
+        Integer id, Function<Integer, Optional<Message>> loader, Function<Message, String> version
+    ) {
+        return get(id, () -> loader.apply(id).map(message -> serialize(message, version.apply(message), null)));
+    }
+
+    /**
+     * Get the JSON of a page of an account's messages, serializing and caching it on
+     * a miss.
+     *
+     * @param account_id the id of the account
+     * @param version the version of the account's message list, taken before the page is read
+     * @param since the earliest time_posted_epoch to include
+     * @param until the time_posted_epoch to stop before
+     * @param limit the requested page size
+     * @param after the cursor of the previous page
+     * @param loader reads the page
+     * @return an empty if the page was rejected, the page's JSON and next cursor otherwise
+     */
+    public Optional<CachedJson> getPage(
+        Integer account_id, String version, Long since, Long until, Integer limit, String after,
+        Supplier<Optional<MessagePage>> loader
+    ) {
+        return get(new PageKey(account_id, version, since, until, limit, after),
+            () -> loader.get().map(page -> serialize(page.getMessages(), version, page.getNextCursor())));
+    }
+
+    /**
+     * Drop a message's JSON once the current transaction commits, or right away if
+     * there is no transaction. Call it after MessageCache.invalidate, so a load in
+     * between cannot serialize the message cache's stale copy.
+     *
+     * @param id the id of the message
+     */
+    public void invalidateMessage(Integer id) {
+        AfterCommit.run(() -> cache.invalidate(id));
+    }
+
+    /**
+     * @return the hit, miss and eviction counters of the cache
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the approximate number of cached entries
+     */
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * @return the total size of the cached JSON in bytes
+     */
+    public long getMemoryBytes() {
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    private Optional<CachedJson> get(Object key, Supplier<Optional<CachedJson>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        return Optional.ofNullable(cache.get(key, k -> loader.get().orElse(null)));
+    }
+
+    private CachedJson serialize(Object value, String version, String nextCursor) {
+        byte[] bytes;
+        try {
+            bytes = objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        ByteBuffer json = offHeap ? ByteBuffer.allocateDirect(bytes.length).put(bytes).flip() : ByteBuffer.wrap(bytes);
+        return new CachedJson(json, version, nextCursor);
+    }
+
+    private static final class PageKey {
+        private final Integer account_id;
+        private final String version;
+        private final Long since;
+        private final Long until;
+        private final Integer limit;
+        private final String after;
+
+        PageKey(Integer account_id, String version, Long since, Long until, Integer limit, String after) {
+            this.account_id = account_id;
+            this.version = version;
+            this.since = since;
+            this.until = until;
+            this.limit = limit;
+            this.after = after;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PageKey)) {
+                return false;
+            }
+            PageKey other = (PageKey) obj;
+            return Objects.equals(account_id, other.account_id)
+                && Objects.equals(version, other.version)
+                && Objects.equals(since, other.since)
+                && Objects.equals(until, other.until)
+                && Objects.equals(limit, other.limit)
+                && Objects.equals(after, other.after);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(account_id, version, since, until, limit, after);
+        }
+    }
+}
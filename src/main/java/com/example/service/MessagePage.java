@@ -0,0 +1,30 @@
+package com.example.service;
+
+import java.util.List;
+
+import com.example.entity.Message;
+
+/**
+ * A single keyset page of messages along with the cursor for the page after it.
+ */
+public class MessagePage {
+
+    private final List<Message> messages;
+    private final String nextCursor;
+
+    public MessagePage(List<Message> messages, String nextCursor) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return the opaque cursor for the next page, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
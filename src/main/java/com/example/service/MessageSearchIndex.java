@@ -0,0 +1,345 @@
+package com.example.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+
+/**
+ * In-memory Lucene index of message_text, so search is an inverted-index lookup
+ * rather than a LIKE scan of the message table. Whole messages are kept in the
+ * index as doc values, so results are served without touching the database and
+ * without decompressing a block of stored fields per hit.
+ *
+ * The index is rebuilt from the table at startup and then kept current as messages
+ * are created, updated and deleted; changes are applied once their transaction
+ * commits, and those committed while the index is being rebuilt are replayed after
+ * it. Hits are ranked by BM25 score, ties broken by message_id, which is also
+ * the keyset order used to page through them.
+ */
+@Component
+public class MessageSearchIndex {
+
+    static final String ID = "id";
+    static final String MESSAGE_ID = "message_id";
+    static final String POSTED_BY = "posted_by";
+    static final String MESSAGE_TEXT = "message_text";
+    static final String TIME_POSTED_EPOCH = "time_posted_epoch";
+    static final Sort RANKING = new Sort(SortField.FIELD_SCORE, new SortField(MESSAGE_ID, SortField.Type.INT));
+
+    private final Logger logger = LoggerFactory.getLogger(MessageSearchIndex.class);
+
+    private final MessageRepository messageRepository;
+    private final EntityManager entityManager;
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final ChangesDuringLoad changesDuringLoad = new ChangesDuringLoad();
+    private volatile boolean loaded = false;
+
+    public MessageSearchIndex(MessageRepository messageRepository, EntityManager entityManager) throws IOException {
+        this.messageRepository = messageRepository;
+        this.entityManager = entityManager;
+        this.writer = new IndexWriter(new ByteBuffersDirectory(), new IndexWriterConfig(analyzer));
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+    }
+
+    /**
+     * Index every existing message once the schema and seed data are in place.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        try (Stream<Message> messages = messageRepository.streamAll()) {
+            messages.forEach(message -> {
+                index(message);
+                entityManager.detach(message);
+            });
+        }
+
+        changesDuringLoad.loaded();
+        loaded = true;
+        logger.info("Message search index loaded: {} messages", writer.getDocStats().numDocs);
+    }
+
+    /**
+     * @return true once every existing message has been indexed
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Add or replace a message once the current transaction commits.
+     *
+     * @param message the created message
+     */
+    public void add(Message message) {
+        AfterCommit.run(() -> changesDuringLoad.apply(() -> index(message)));
+    }
+
+    /**
+     * Replace the text of an indexed message once the current transaction commits.
+     *
+     * @param message_id the id of the updated message
+     * @param message_text the new text
+     */
+    public void updateText(Integer message_id, String message_text) {
+        AfterCommit.run(() -> changesDuringLoad.apply(() -> replaceText(message_id, message_text)));
+    }
+
+    /**
+     * Remove a message once the current transaction commits.
+     *
+     * @param message_id the id of the deleted message
+     */
+    public void remove(Integer message_id) {
+        AfterCommit.run(() -> changesDuringLoad.apply(() -> {
+            try {
+                writer.deleteDocuments(new Term(ID, message_id.toString()));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }));
+    }
+
+    /**
+     * Find the messages containing every term of a query, best match first.
+     *
+     * @param query the user's query, analyzed like message_text
+     * @param count the maximum number of hits to return
+     * @param after the last hit of the previous page, null for the first page
+     * @return the hits, in rank order; empty if the query has no terms
+     */
+    public List<Hit> search(String query, int count, SearchCursor after) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        List<String> terms = terms(query);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        for (String term : terms) {
+            builder.add(new TermQuery(new Term(MESSAGE_TEXT, term)), BooleanClause.Occur.MUST);
+        }
+
+        try {
+            searcherManager.maybeRefresh();
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                // (score, message_id) is unique, so the cursor's Lucene doc id only matters
+                // for a hit equal to the cursor itself: the highest id skips it.
+                TopDocs topDocs = after == null
+                    ? searcher.search(builder.build(), count, RANKING, true)
+                    : searcher.searchAfter(
+                        new FieldDoc(
+                            searcher.getIndexReader().maxDoc() - 1,
+                            after.getScore(),
+                            new Object[] {after.getScore(), after.getMessage_id()}
+                        ),
+                        builder.build(), count, RANKING, true
+                    );
+
+                Message[] messages = toMessages(searcher, topDocs.scoreDocs);
+                List<Hit> hits = new ArrayList<>(messages.length);
+                for (int i = 0; i < messages.length; i++) {
+                    hits.add(new Hit(messages[i], topDocs.scoreDocs[i].score));
+                }
+                return hits;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * @return the number of indexed messages
+     */
+    public int getSize() {
+        return writer.getDocStats().numDocs;
+    }
+
+    private void index(Message message) {
+        try {
+            writer.updateDocument(new Term(ID, message.getMessage_id().toString()), toDocument(message));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Rebuild a message's document from its doc values with the new text.
+     * Synchronized so two updates of the same message cannot interleave.
+     */
+    private synchronized void replaceText(Integer message_id, String message_text) {
+        try {
+            searcherManager.maybeRefreshBlocking();
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs topDocs = searcher.search(new TermQuery(new Term(ID, message_id.toString())), 1);
+                if (topDocs.scoreDocs.length == 0) {
+                    return;
+                }
+
+                Message message = toMessages(searcher, topDocs.scoreDocs)[0];
+                message.setMessage_text(message_text);
+                index(message);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private List<String> terms(String query) {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream tokens = analyzer.tokenStream(MESSAGE_TEXT, query)) {
+            CharTermAttribute term = tokens.addAttribute(CharTermAttribute.class);
+            tokens.reset();
+            while (tokens.incrementToken()) {
+                terms.add(term.toString());
+            }
+            tokens.end();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return terms;
+    }
+
+    private static Document toDocument(Message message) {
+        Document document = new Document();
+        document.add(new StringField(ID, message.getMessage_id().toString(), Field.Store.NO));
+        document.add(new NumericDocValuesField(MESSAGE_ID, message.getMessage_id()));
+        if (message.getPosted_by() != null) {
+            document.add(new NumericDocValuesField(POSTED_BY, message.getPosted_by()));
+        }
+        if (message.getTime_posted_epoch() != null) {
+            document.add(new NumericDocValuesField(TIME_POSTED_EPOCH, message.getTime_posted_epoch()));
+        }
+        document.add(new TextField(MESSAGE_TEXT, message.getMessage_text(), Field.Store.NO));
+        document.add(new BinaryDocValuesField(MESSAGE_TEXT, new BytesRef(message.getMessage_text())));
+        return document;
+    }
+
+    /**
+     * Read messages back from their doc values. Doc values are read forward only, so
+     * the hits are visited in doc order, with one set of iterators per segment, and
+     * the messages returned in the order of the hits.
+     */
+    private static Message[] toMessages(IndexSearcher searcher, ScoreDoc[] scoreDocs) throws IOException {
+        Integer[] byDoc = new Integer[scoreDocs.length];
+        for (int i = 0; i < byDoc.length; i++) {
+            byDoc[i] = i;
+        }
+        Arrays.sort(byDoc, Comparator.comparingInt(i -> scoreDocs[i].doc));
+
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        Message[] messages = new Message[scoreDocs.length];
+        LeafReaderContext leaf = null;
+        NumericDocValues messageIds = null;
+        NumericDocValues postedBy = null;
+        NumericDocValues timePosted = null;
+        BinaryDocValues text = null;
+        for (int i : byDoc) {
+            int doc = scoreDocs[i].doc;
+            if (leaf == null || doc >= leaf.docBase + leaf.reader().maxDoc()) {
+                leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+                LeafReader reader = leaf.reader();
+                messageIds = reader.getNumericDocValues(MESSAGE_ID);
+                postedBy = reader.getNumericDocValues(POSTED_BY);
+                timePosted = reader.getNumericDocValues(TIME_POSTED_EPOCH);
+                text = reader.getBinaryDocValues(MESSAGE_TEXT);
+            }
+
+            int leafDoc = doc - leaf.docBase;
+            Long poster = numeric(postedBy, leafDoc);
+            messages[i] = new Message(
+                numeric(messageIds, leafDoc).intValue(),
+                poster == null ? null : poster.intValue(),
+                text != null && text.advanceExact(leafDoc) ? text.binaryValue().utf8ToString() : null,
+                numeric(timePosted, leafDoc)
+            );
+        }
+        return messages;
+    }
+
+    private static Long numeric(NumericDocValues values, int doc) throws IOException {
+        return values != null && values.advanceExact(doc) ? values.longValue() : null;
+    }
+
+    /**
+     * A message matching a search, with its relevance score.
+     */
+    public static class Hit {
+
+        private final Message message;
+        private final float score;
+
+        public Hit(Message message, float score) {
+            this.message = message;
+            this.score = score;
+        }
+
+        public Message getMessage() {
+            return message;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+}
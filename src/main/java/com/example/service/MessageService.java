@@ -1,13 +1,30 @@
 package com.example.service;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.example.entity.Message;
+import com.example.exception.MessageQueueFullException;
+import com.example.exception.SearchIndexUnavailableException;
 import com.example.repository.AccountRepository;
+import com.example.repository.AccountStats;
+import com.example.repository.AccountStatsRepository;
 import com.example.repository.MessageRepository;
 
 @Service
@@ -15,11 +32,53 @@ public class MessageService {
 
     private final MessageRepository messageRepository;
     private final AccountRepository accountRepository;
+    private final AccountStatsRepository accountStatsRepository;
+    private final AccountIdIndex accountIdIndex;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageCache messageCache;
+    private final MessageJsonCache messageJsonCache;
+    private final MessageSearchIndex searchIndex;
+    private final AccountMessageVersions accountMessageVersions;
+    private final FeedService feedService;
+    private final Optional<MessageIngestionPipeline> ingestionPipeline;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int maxBatchSize;
 
     @Autowired
-    public MessageService(MessageRepository messageRepository, AccountRepository accountRepository) {
+    public MessageService(
+        MessageRepository messageRepository,
+        AccountRepository accountRepository,
+        AccountStatsRepository accountStatsRepository,
+        AccountIdIndex accountIdIndex,
+        EntityManager entityManager,
+        PlatformTransactionManager transactionManager,
+        MessageCache messageCache,
+        MessageJsonCache messageJsonCache,
+        MessageSearchIndex searchIndex,
+        AccountMessageVersions accountMessageVersions,
+        FeedService feedService,
+        Optional<MessageIngestionPipeline> ingestionPipeline,
+        @Value("${social-media.messages.default-page-size:100}") int defaultPageSize,
+        @Value("${social-media.messages.max-page-size:1000}") int maxPageSize,
+        @Value("${social-media.messages.max-batch-size:1000}") int maxBatchSize
+    ) {
         this.messageRepository = messageRepository;
         this.accountRepository = accountRepository;
+        this.accountStatsRepository = accountStatsRepository;
+        this.accountIdIndex = accountIdIndex;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.messageCache = messageCache;
+        this.messageJsonCache = messageJsonCache;
+        this.searchIndex = searchIndex;
+        this.accountMessageVersions = accountMessageVersions;
+        this.feedService = feedService;
+        this.ingestionPipeline = ingestionPipeline;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxBatchSize = maxBatchSize;
     }
 
     /**
@@ -29,6 +88,12 @@ public class MessageService {
      * - message_text length is < 255
      * - posted_by is a real/existing account
      * 
+     * posted_by is checked against the in-memory account id index; counting the
+     * message against its author finds no account row for anything the index gets
+     * wrong. The insert, the author's counters and the fan-out into the followers'
+     * home timelines share one transaction (a template rather than @Transactional,
+     * since submitMessage calls this directly).
+     * 
      * @param message the message to create
      * @return empty if a validation check failed, present message if it was created successfully.
      */
@@ -37,79 +102,517 @@ public class MessageService {
             return Optional.empty();
         }
 
-        if(accountRepository.findById(message.getPosted_by()).isEmpty()) {
+        if (!accountIdIndex.contains(message.getPosted_by())) {
             return Optional.empty();
         }
 
-        return Optional.of(messageRepository.save(message));
+        // Without a version the message is persisted, which rejects an id sent by the client.
+        message.setMessage_id(null);
+        return transactionTemplate.execute(status -> {
+            if (!accountStatsRepository.recordPost(message.getPosted_by(), message.getTime_posted_epoch())) {
+                return Optional.empty();
+            }
+
+            Message createdMessage = messageRepository.save(message);
+            // The timeline entries reference the message, and are written through JDBC rather than Hibernate.
+            entityManager.flush();
+            messageCache.invalidate(createdMessage.getMessage_id());
+            searchIndex.add(createdMessage);
+            accountMessageVersions.bump(createdMessage.getPosted_by());
+            feedService.fanOut(List.of(createdMessage));
+            return Optional.of(createdMessage);
+        });
     }
 
     /**
-     * Get all the Messages
+     * Create a new message through the write-behind ingestion pipeline when it is
+     * enabled, so the insert shares a group commit with other requests. Validation
+     * is the same as createMessage and happens before the message is queued.
+     * Without the pipeline this is createMessage, already completed.
      * 
-     * @return the messages
+     * @param message the message to create
+     * @return completes with empty if a validation check failed, present message once it has been committed,
+     *         or exceptionally if the insert failed
+     * @throws MessageQueueFullException if the ingestion queue is at capacity
      */
-    public List<Message> getAllMessages() {
-        return messageRepository.findAll();
+    public CompletableFuture<Optional<Message>> submitMessage(Message message) throws MessageQueueFullException {
+        if (ingestionPipeline.isEmpty()) {
+            return CompletableFuture.completedFuture(createMessage(message));
+        }
+
+        if (!messageTextIsValid(message.getMessage_text()) || !accountIdIndex.contains(message.getPosted_by())) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        message.setMessage_id(null);
+        return ingestionPipeline.get().submit(message).thenApply(createdMessage -> {
+            messageCache.invalidate(createdMessage.getMessage_id());
+            searchIndex.add(createdMessage);
+            accountMessageVersions.bump(createdMessage.getPosted_by());
+            feedService.fanOut(List.of(createdMessage));
+            return Optional.of(createdMessage);
+        });
     }
 
     /**
-     * Find a message by id 
+     * Create many messages at once.
+     * Every item is validated with the same requirements as createMessage; all the
+     * posted_by ids are checked with a single IN query and the valid messages are
+     * inserted together, in JDBC batches.
+     * 
+     * @param messages the messages to create
+     * @return empty if the batch is larger than the max batch size, otherwise one result per item, in order
+     */
+    @Transactional
+    public Optional<List<MessageBatchResult>> createMessages(List<Message> messages) {
+        if (messages.size() > maxBatchSize) {
+            return Optional.empty();
+        }
+
+        Set<Integer> postedBy = new HashSet<>();
+        for (Message message : messages) {
+            if (message.getPosted_by() != null) {
+                postedBy.add(message.getPosted_by());
+            }
+        }
+        Set<Integer> existingAccounts = postedBy.isEmpty()
+            ? Set.of()
+            : new HashSet<>(accountRepository.findExistingAccountIds(postedBy));
+
+        boolean[] valid = new boolean[messages.size()];
+        List<Message> validMessages = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            valid[i] = messageTextIsValid(message.getMessage_text()) && existingAccounts.contains(message.getPosted_by());
+            if (valid[i]) {
+                // Without a version the message is persisted, which rejects an id sent by the client.
+                message.setMessage_id(null);
+                validMessages.add(message);
+            }
+        }
+
+        accountStatsRepository.recordPosts(validMessages);
+        messageRepository.saveAll(validMessages);
+        // The timeline entries reference the messages, and are written through JDBC rather than Hibernate.
+        entityManager.flush();
+        feedService.fanOut(validMessages);
+
+        List<MessageBatchResult> results = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            if (valid[i]) {
+                messageCache.invalidate(messages.get(i).getMessage_id());
+                searchIndex.add(messages.get(i));
+                accountMessageVersions.bump(messages.get(i).getPosted_by());
+                results.add(new MessageBatchResult(200, messages.get(i)));
+            } else {
+                results.add(new MessageBatchResult(400, null));
+            }
+        }
+
+        return Optional.of(results);
+    }
+
+    /**
+     * Get a page of Messages, ordered by message_id
+     * 
+     * @param limit the requested page size, null for the default; clamped to the max page size
+     * @param after the cursor returned with the previous page, null for the first page
+     * @return empty if the limit or cursor is invalid, present page otherwise
+     */
+    public Optional<MessagePage> getAllMessages(Integer limit, String after) {
+        Optional<PageRequest> pageRequest = pageRequest(limit);
+        if (pageRequest.isEmpty()) {
+            return Optional.empty();
+        }
+
+        if (after == null) {
+            return Optional.of(toPage(messageRepository.findFirstPage(pageRequest.get()), pageRequest.get()));
+        }
+
+        Optional<MessageCursor> cursor = MessageCursor.decode(after);
+        if (cursor.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(toPage(
+            messageRepository.findPageAfter(cursor.get().getMessage_id(), pageRequest.get()),
+            pageRequest.get()
+        ));
+    }
+
+    /**
+     * Get a page of the Messages posted in [since, until), newest first, with ties
+     * broken by message_id. Without either bound this is getAllMessages(limit, after).
+     * 
+     * @param since the earliest time_posted_epoch to include, null for no lower bound
+     * @param until the time_posted_epoch to stop before, null for no upper bound
+     * @param limit the requested page size, null for the default; clamped to the max page size
+     * @param after the cursor returned with the previous page, null for the first page
+     * @return empty if the range, limit or cursor is invalid, present page otherwise
+     */
+    public Optional<MessagePage> getAllMessages(Long since, Long until, Integer limit, String after) {
+        if (since == null && until == null) {
+            return getAllMessages(limit, after);
+        }
+
+        Optional<PageRequest> pageRequest = pageRequest(limit);
+        if (pageRequest.isEmpty() || !timeRangeIsValid(since, until)) {
+            return Optional.empty();
+        }
+
+        if (after == null) {
+            return Optional.of(toPage(
+                messageRepository.findFirstPageInRange(lowerBound(since), upperBound(until), pageRequest.get()),
+                pageRequest.get()
+            ));
+        }
+
+        Optional<MessageCursor> cursor = timeCursor(after);
+        if (cursor.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(toPage(
+            messageRepository.findPageInRangeAfter(
+                lowerBound(since), upperBound(until),
+                cursor.get().getTime_posted_epoch(), cursor.get().getMessage_id(), pageRequest.get()
+            ),
+            pageRequest.get()
+        ));
+    }
+
+    /**
+     * Stream every Message, ordered by message_id, to the consumer as rows are read
+     * from a forward-only cursor. The rows are projections, so the persistence
+     * context does not grow with the table.
+     * 
+     * @param consumer receives each message in order
+     */
+    @Transactional(readOnly = true)
+    public void streamAllMessages(Consumer<Message> consumer) {
+        try (Stream<Message> messages = messageRepository.streamAll()) {
+            messages.forEach(consumer);
+        }
+    }
+
+    /**
+     * Find a message by id, through the message cache
      * 
      * @param id the id of the message
      * @return an empty if not found, present message if exists 
      */
     public Optional<Message> getMessageById(Integer id) {
-        return messageRepository.findById(id);
+        return messageCache.get(id, messageRepository::findById);
+    }
+
+    /**
+     * Get the JSON of a message by id, serialized once and then served from the
+     * JSON cache until the message is updated or deleted.
+     * 
+     * @param id the id of the message
+     * @return an empty if not found, the message's JSON and version otherwise
+     */
+    public Optional<CachedJson> getMessageJsonById(Integer id) {
+        return messageJsonCache.getMessage(id, this::getMessageById, accountMessageVersions::getMessageVersion);
     }
 
     /**
-     * Attempt to delete a message by id
+     * Attempt to delete a message by id, with a single statement that also takes
+     * the message off its author's counters
      * 
      * @param id the id of the message to delete
      * @return true if the message exists and was deleted, false if nothing happened
      */
+    @Transactional
     public boolean deleteMessageById(Integer id) {
-        Optional<Message> existingMessage = messageRepository.findById(id);
-        if (existingMessage.isPresent()) {
-            messageRepository.deleteById(id);
-            return true;
+        Optional<Integer> postedBy = messageRepository.deleteByMessageId(id);
+        if (postedBy.isEmpty()) {
+            return false;
         }
 
-        return false;
+        messageCache.invalidate(id);
+        messageJsonCache.invalidateMessage(id);
+        searchIndex.remove(id);
+        accountMessageVersions.bump(postedBy.get());
+        return true;
     }
 
     /**
-     * Attempt to update a message by id
+     * Attempt to update a message by id, with a single UPDATE statement that also
+     * bumps its version
      * 
      * @param message_text the message text to update
      * @param message_id the id of the message to update
-     * @return empty if the message doesn't exist or a validation check failed, present message if the update was successful
+     * @return false if the message doesn't exist or a validation check failed, true if the update was successful
+     */
+    @Transactional
+    public boolean updateMessageById(String message_text, Integer message_id) {
+        if (!messageTextIsValid(message_text)) {
+            return false;
+        }
+
+        Optional<Integer> postedBy = messageRepository.updateMessageText(message_id, message_text);
+        if (postedBy.isEmpty()) {
+            return false;
+        }
+
+        messageCache.invalidate(message_id);
+        messageJsonCache.invalidateMessage(message_id);
+        searchIndex.updateText(message_id, message_text);
+        accountMessageVersions.bump(postedBy.get());
+        return true;
+    }
+
+    /**
+     * Search message_text for messages containing every term of a query, best match
+     * first, from the in-memory search index without touching the database.
+     * 
+     * @param query the search terms
+     * @param limit the requested page size, null for the default; clamped to the max page size
+     * @param after the cursor returned with the previous page, null for the first page
+     * @return empty if the query is blank or the limit or cursor is invalid, present page otherwise
+     * @throws SearchIndexUnavailableException if the index is still being built at startup
      */
-    public Optional<Message> updateMessageById(String message_text, Integer message_id) {
-        Optional<Message> existingMessage = messageRepository.findById(message_id);
-        if (existingMessage.isEmpty()) {
+    public Optional<MessagePage> searchMessages(String query, Integer limit, String after) throws SearchIndexUnavailableException {
+        Optional<PageRequest> pageRequest = pageRequest(limit);
+        if (query == null || query.isBlank() || pageRequest.isEmpty()) {
             return Optional.empty();
         }
 
-        if (!messageTextIsValid(message_text)) {
+        SearchCursor cursor = null;
+        if (after != null) {
+            Optional<SearchCursor> decoded = SearchCursor.decode(after);
+            if (decoded.isEmpty()) {
+                return Optional.empty();
+            }
+            cursor = decoded.get();
+        }
+
+        if (!searchIndex.isLoaded()) {
+            throw new SearchIndexUnavailableException("The search index is still loading");
+        }
+
+        int pageSize = pageRequest.get().getPageSize() - 1;
+        List<MessageSearchIndex.Hit> hits = searchIndex.search(query, pageSize + 1, cursor);
+        List<Message> messages = new ArrayList<>(Math.min(hits.size(), pageSize));
+        for (int i = 0; i < hits.size() && i < pageSize; i++) {
+            messages.add(hits.get(i).getMessage());
+        }
+
+        if (hits.size() <= pageSize) {
+            return Optional.of(new MessagePage(messages, null));
+        }
+
+        MessageSearchIndex.Hit last = hits.get(pageSize - 1);
+        return Optional.of(new MessagePage(messages, new SearchCursor(last.getScore(), last.getMessage().getMessage_id()).encode()));
+    }
+
+    /**
+     * Get the version of an account's message list, from memory. It changes whenever
+     * one of the account's messages is created, updated or deleted, and on restart.
+     * 
+     * @param id the id of the account
+     * @return the version
+     */
+    public String getMessagesVersion(Integer id) {
+        return accountMessageVersions.get(id);
+    }
+
+    /**
+     * Get an account's message count and first and last post times, from the
+     * counters kept on its account row rather than by reading its messages
+     * 
+     * @param id the id of the account
+     * @return an empty if the account does not exist, present stats otherwise
+     */
+    public Optional<AccountStats> getAccountStats(Integer id) {
+        return accountStatsRepository.findById(id);
+    }
+
+    /**
+     * Find a page of the messages made by a given account, newest first
+     * 
+     * @param id the id of the account to look for
+     * @param limit the requested page size, null for the default; clamped to the max page size
+     * @param after the cursor returned with the previous page, null for the first page
+     * @return empty if the limit or cursor is invalid, present page otherwise
+     */
+    public Optional<MessagePage> getMessagesByAccountId(Integer id, Integer limit, String after) {
+        Optional<PageRequest> pageRequest = pageRequest(limit);
+        if (pageRequest.isEmpty()) {
             return Optional.empty();
         }
 
-        Message message = existingMessage.get();
-        message.setMessage_text(message_text);
+        if (after == null) {
+            return Optional.of(toTimePage(messageRepository.findFirstPageByPostedBy(id, pageRequest.get()), pageRequest.get()));
+        }
+
+        Optional<MessageCursor> cursor = timeCursor(after);
+        if (cursor.isEmpty()) {
+            return Optional.empty();
+        }
 
-        return Optional.of(messageRepository.save(message));
+        return Optional.of(toTimePage(
+            messageRepository.findPageByPostedByAfter(
+                id, cursor.get().getTime_posted_epoch(), cursor.get().getMessage_id(), pageRequest.get()
+            ),
+            pageRequest.get()
+        ));
     }
 
     /**
-     * Find all the messages made by a given account
+     * Find a page of the messages made by a given account in [since, until), newest
+     * first. Without either bound this is getMessagesByAccountId(id, limit, after).
      * 
      * @param id the id of the account to look for
-     * @return the messages created by the account
+     * @param since the earliest time_posted_epoch to include, null for no lower bound
+     * @param until the time_posted_epoch to stop before, null for no upper bound
+     * @param limit the requested page size, null for the default; clamped to the max page size
+     * @param after the cursor returned with the previous page, null for the first page
+     * @return empty if the range, limit or cursor is invalid, present page otherwise
      */
-    public List<Message> getMessagesByAccountId(Integer id) {
-        return messageRepository.findAllByPostedBy(id);
+    public Optional<MessagePage> getMessagesByAccountId(Integer id, Long since, Long until, Integer limit, String after) {
+        if (since == null && until == null) {
+            return getMessagesByAccountId(id, limit, after);
+        }
+
+        Optional<PageRequest> pageRequest = pageRequest(limit);
+        if (pageRequest.isEmpty() || !timeRangeIsValid(since, until)) {
+            return Optional.empty();
+        }
+
+        if (after == null) {
+            return Optional.of(toPage(
+                messageRepository.findFirstPageByPostedByInRange(id, lowerBound(since), upperBound(until), pageRequest.get()),
+                pageRequest.get()
+            ));
+        }
+
+        Optional<MessageCursor> cursor = timeCursor(after);
+        if (cursor.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(toPage(
+            messageRepository.findPageByPostedByInRangeAfter(
+                id, lowerBound(since), upperBound(until),
+                cursor.get().getTime_posted_epoch(), cursor.get().getMessage_id(), pageRequest.get()
+            ),
+            pageRequest.get()
+        ));
+    }
+
+    /**
+     * Get the JSON of a page of the messages made by a given account, as
+     * getMessagesByAccountId would return it, served from the JSON cache while the
+     * account's message list stays at the given version.
+     * 
+     * @param id the id of the account to look for
+     * @param version the version of the account's message list, from getMessagesVersion before the read
+     * @param since the earliest time_posted_epoch to include, null for no lower bound
+     * @param until the time_posted_epoch to stop before, null for no upper bound
+     * @param limit the requested page size, null for the default; clamped to the max page size
+     * @param after the cursor returned with the previous page, null for the first page
+     * @return empty if the range, limit or cursor is invalid, the page's JSON and next cursor otherwise
+     */
+    public Optional<CachedJson> getMessagesJsonByAccountId(Integer id, String version, Long since, Long until, Integer limit, String after) {
+        return messageJsonCache.getPage(id, version, since, until, limit, after,
+            () -> getMessagesByAccountId(id, since, until, limit, after));
+    }
+
+    /**
+     * Stream every message made by a given account, newest first, to the consumer as
+     * rows are read from a forward-only cursor.
+     * 
+     * @param id the id of the account to look for
+     * @param consumer receives each message in order
+     */
+    @Transactional(readOnly = true)
+    public void streamMessagesByAccountId(Integer id, Consumer<Message> consumer) {
+        try (Stream<Message> messages = messageRepository.streamAllByPostedBy(id)) {
+            messages.forEach(consumer);
+        }
+    }
+
+    /**
+     * Build the page request for a keyset page. One extra row is fetched so we
+     * know whether there is a following page without issuing a count query.
+     * 
+     * @param limit the requested page size, null for the default
+     * @return empty if the limit is not positive, present page request otherwise
+     */
+    private Optional<PageRequest> pageRequest(Integer limit) {
+        if (limit == null) {
+            limit = defaultPageSize;
+        }
+
+        if (limit < 1) {
+            return Optional.empty();
+        }
+
+        return Optional.of(PageRequest.of(0, Math.min(limit, maxPageSize) + 1));
+    }
+
+    /**
+     * A time range is valid unless both bounds are given and since comes after until.
+     */
+    private static boolean timeRangeIsValid(Long since, Long until) {
+        return since == null || until == null || since <= until;
+    }
+
+    private static long lowerBound(Long since) {
+        return since == null ? Long.MIN_VALUE : since;
+    }
+
+    private static long upperBound(Long until) {
+        return until == null ? Long.MAX_VALUE : until;
+    }
+
+    /**
+     * Decode a cursor for a time-ordered page, which must carry a time_posted_epoch.
+     * 
+     * @param after the encoded cursor
+     * @return empty if the cursor is malformed or has no time
+     */
+    private static Optional<MessageCursor> timeCursor(String after) {
+        return MessageCursor.decode(after).filter(cursor -> cursor.getTime_posted_epoch() != null);
+    }
+
+    /**
+     * Trim the look-ahead row off a fetched page and derive the next cursor from it.
+     * 
+     * @param messages the fetched rows, possibly including the look-ahead row
+     * @param pageRequest the page request used to fetch the rows
+     * @return the page
+     */
+    private MessagePage toPage(List<Message> messages, PageRequest pageRequest) {
+        int pageSize = pageRequest.getPageSize() - 1;
+        if (messages.size() <= pageSize) {
+            return new MessagePage(messages, null);
+        }
+
+        List<Message> page = messages.subList(0, pageSize);
+        Message last = page.get(pageSize - 1);
+        return new MessagePage(page, new MessageCursor(last.getTime_posted_epoch(), last.getMessage_id()).encode());
+    }
+
+    /**
+     * Trim the look-ahead row off a page in time order, with no next cursor if the
+     * page ends on a message without a time_posted_epoch: the time keyset cannot
+     * continue past one. Such messages sort after every timed message, so a listing
+     * reaches the first of them and stops.
+     * 
+     * @param messages the fetched rows, possibly including the look-ahead row
+     * @param pageRequest the page request used to fetch the rows
+     * @return the page
+     */
+    private MessagePage toTimePage(List<Message> messages, PageRequest pageRequest) {
+        int pageSize = pageRequest.getPageSize() - 1;
+        if (messages.size() > pageSize && messages.get(pageSize - 1).getTime_posted_epoch() == null) {
+            return new MessagePage(messages.subList(0, pageSize), null);
+        }
+
+        return toPage(messages, pageRequest);
     }
 
     /**
@@ -122,6 +625,6 @@ public class MessageService {
      * @return true if valid, false if invalid
      */
     private boolean messageTextIsValid(String message_text) {
-        return !message_text.isBlank() && message_text.length() < 255;
+        return message_text != null && !message_text.isBlank() && message_text.length() < 255;
     }
 }
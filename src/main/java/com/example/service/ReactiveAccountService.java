@@ -0,0 +1,112 @@
+package com.example.service;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.example.entity.Account;
+import com.example.exception.AccountAlreadyExistsException;
+import com.example.exception.AccountException;
+import com.example.repository.ReactiveAccountRepository;
+
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of AccountService for the reactive profile, with the
+ * same requirements. It shares the username filter and account id index, so both
+ * stay current whichever stack registers the account.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveAccountService {
+
+    private final ReactiveAccountRepository accountRepository;
+    private final UsernameBloomFilter usernameFilter;
+    private final AccountIdIndex accountIdIndex;
+
+    public ReactiveAccountService(
+        ReactiveAccountRepository accountRepository,
+        UsernameBloomFilter usernameFilter,
+        AccountIdIndex accountIdIndex
+    ) {
+        this.accountRepository = accountRepository;
+        this.usernameFilter = usernameFilter;
+        this.accountIdIndex = accountIdIndex;
+    }
+
+    /**
+     * Register a new account.
+     * Requirements:
+     * - Username is not blank.
+     * - Password is at least 4 characters long.
+     * - Username is unique within our database.
+     *
+     * @param account the account to create
+     * @return the newly created account; fails with AccountException if a validation check
+     *         failed, or AccountAlreadyExistsException if the username already exists
+     */
+    public Mono<Account> createAccount(Account account) {
+        if (account.getUsername().isBlank()) {
+            return Mono.error(new AccountException("Username cannot be blank"));
+        }
+
+        if (account.getPassword().length() < 4) {
+            return Mono.error(new AccountException("Password must be at least 4 characters long"));
+        }
+
+        return accountRepository.save(account)
+            .onErrorMap(this::isUsernameConflict,
+                ex -> new AccountAlreadyExistsException("An account with the provided username already exists"))
+            .doOnNext(createdAccount -> {
+                usernameFilter.put(createdAccount.getUsername());
+                accountIdIndex.add(createdAccount.getAccount_id());
+            });
+    }
+
+    /**
+     * Attempt to authenticate against an existing account.
+     * Requirements:
+     * - Account with username exists
+     * - Provided passwords fully match
+     *
+     * As in AccountService, the username filter only measures itself; every login
+     * is looked up by username.
+     *
+     * @param account the account to authenticate
+     * @return empty if the authentication failed, the account if it was successful
+     */
+    public Mono<Account> authenticate(Account account) {
+        if (account.getUsername() == null) {
+            return Mono.empty();
+        }
+
+        boolean mightContain = usernameFilter.mightContain(account.getUsername());
+        return accountRepository.findAccountByUsername(account.getUsername())
+            .doOnNext(existingAccount -> {
+                if (!mightContain) {
+                    usernameFilter.put(existingAccount.getUsername());
+                }
+            })
+            .switchIfEmpty(Mono.fromRunnable(() -> {
+                if (mightContain) {
+                    usernameFilter.recordFalsePositive();
+                }
+            }))
+            .filter(existingAccount -> existingAccount.getPassword().equals(account.getPassword()));
+    }
+
+    /**
+     * Check whether a failed INSERT was caused by the username unique constraint.
+     *
+     * @param ex the failure
+     * @return true if the username is already taken
+     */
+    private boolean isUsernameConflict(Throwable ex) {
+        if (!(ex instanceof R2dbcDataIntegrityViolationException)) {
+            return false;
+        }
+
+        String message = ex.getMessage();
+        return message != null && message.toUpperCase().contains(AccountService.USERNAME_UNIQUE_CONSTRAINT);
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.example.entity.Message;
+import com.example.repository.ReactiveAccountRepository;
+import com.example.repository.ReactiveMessageRepository;
+
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of MessageService for the reactive profile, with the
+ * same requirements, paging and cursors.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveMessageService {
+
+    private final ReactiveMessageRepository messageRepository;
+    private final ReactiveAccountRepository accountRepository;
+    private final AccountIdIndex accountIdIndex;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int maxBatchSize;
+
+    public ReactiveMessageService(
+        ReactiveMessageRepository messageRepository,
+        ReactiveAccountRepository accountRepository,
+        AccountIdIndex accountIdIndex,
+        @Value("${social-media.messages.default-page-size:100}") int defaultPageSize,
+        @Value("${social-media.messages.max-page-size:1000}") int maxPageSize,
+        @Value("${social-media.messages.max-batch-size:1000}") int maxBatchSize
+    ) {
+        this.messageRepository = messageRepository;
+        this.accountRepository = accountRepository;
+        this.accountIdIndex = accountIdIndex;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Create a new message.
+     * Requirements:
+     * - message_text is not blank
+     * - message_text length is < 255
+     * - posted_by is a real/existing account
+     *
+     * @param message the message to create
+     * @return empty if a validation check failed, the message if it was created successfully
+     */
+    public Mono<Message> createMessage(Message message) {
+        if (!messageTextIsValid(message.getMessage_text())) {
+            return Mono.empty();
+        }
+
+        return accountExists(message.getPosted_by())
+            .filter(exists -> exists)
+            .flatMap(exists -> messageRepository.save(message))
+            .onErrorResume(R2dbcDataIntegrityViolationException.class, ex -> Mono.empty());
+    }
+
+    /**
+     * Create many messages at once, validated like createMessage, with all posted_by
+     * ids checked by one IN query and the valid messages inserted in one batch.
+     *
+     * @param messages the messages to create
+     * @return empty if the batch is larger than the max batch size, otherwise one result per item, in order
+     */
+    public Mono<List<MessageBatchResult>> createMessages(List<Message> messages) {
+        if (messages.size() > maxBatchSize) {
+            return Mono.empty();
+        }
+
+        Set<Integer> postedBy = new HashSet<>();
+        for (Message message : messages) {
+            if (message.getPosted_by() != null) {
+                postedBy.add(message.getPosted_by());
+            }
+        }
+
+        return accountRepository.findExistingAccountIds(postedBy)
+            .collect(HashSet<Integer>::new, Set::add)
+            .flatMap(existingAccounts -> {
+                boolean[] valid = new boolean[messages.size()];
+                List<Message> validMessages = new ArrayList<>();
+                for (int i = 0; i < messages.size(); i++) {
+                    Message message = messages.get(i);
+                    valid[i] = messageTextIsValid(message.getMessage_text()) && existingAccounts.contains(message.getPosted_by());
+                    if (valid[i]) {
+                        validMessages.add(message);
+                    }
+                }
+
+                return messageRepository.saveAll(validMessages).map(saved -> {
+                    List<MessageBatchResult> results = new ArrayList<>(messages.size());
+                    for (int i = 0; i < messages.size(); i++) {
+                        results.add(valid[i] ? new MessageBatchResult(200, messages.get(i)) : new MessageBatchResult(400, null));
+                    }
+                    return results;
+                });
+            });
+    }
+
+    /**
+     * Get a page of Messages, ordered by message_id
+     *
+     * @param limit the requested page size, null for the default; clamped to the max page size
+     * @param after the cursor returned with the previous page, null for the first page
+     * @return empty if the limit or cursor is invalid, the page otherwise
+     */
+    public Mono<MessagePage> getAllMessages(Integer limit, String after) {
+        Integer fetchSize = fetchSize(limit);
+        if (fetchSize == null) {
+            return Mono.empty();
+        }
+
+        if (after == null) {
+            return toPage(messageRepository.findFirstPage(fetchSize), fetchSize);
+        }
+
+        return Mono.justOrEmpty(MessageCursor.decode(after))
+            .flatMap(cursor -> toPage(messageRepository.findPageAfter(cursor.getMessage_id(), fetchSize), fetchSize));
+    }
+
+    /**
+     * Get a page of the Messages posted in [since, until), newest first, with ties
+     * broken by message_id. Without either bound this is getAllMessages(limit, after).
+     *
+     * @param since the earliest time_posted_epoch to include, null for no lower bound
+     * @param until the time_posted_epoch to stop before, null for no upper bound
+     * @param limit the requested page size, null for the default; clamped to the max page size
+     * @param after the cursor returned with the previous page, null for the first page
+     * @return empty if the range, limit or cursor is invalid, the page otherwise
+     */
+    public Mono<MessagePage> getAllMessages(Long since, Long until, Integer limit, String after) {
+        if (since == null && until == null) {
+            return getAllMessages(limit, after);
+        }
+
+        Integer fetchSize = fetchSize(limit);
+        if (fetchSize == null || !timeRangeIsValid(since, until)) {
+            return Mono.empty();
+        }
+
+        if (after == null) {
+            return toPage(messageRepository.findFirstPageInRange(lowerBound(since), upperBound(until), fetchSize), fetchSize);
+        }
+
+        return Mono.justOrEmpty(timeCursor(after))
+            .flatMap(cursor -> toPage(
+                messageRepository.findPageInRangeAfter(
+                    lowerBound(since), upperBound(until), cursor.getTime_posted_epoch(), cursor.getMessage_id(), fetchSize
+                ),
+                fetchSize
+            ));
+    }
+
+    /**
+     * Stream every Message, ordered by message_id.
+     *
+     * @return the messages
+     */
+    public Flux<Message> streamAllMessages() {
+        return messageRepository.findAll();
+    }
+
+    public Mono<Message> getMessageById(Integer id) {
+        return messageRepository.findById(id);
+    }
+
+    /**
+     * Attempt to delete a message by id, with a single DELETE statement
+     *
+     * @param id the id of the message to delete
+     * @return true if the message existed and was deleted, false if nothing happened
+     */
+    public Mono<Boolean> deleteMessageById(Integer id) {
+        return messageRepository.deleteByMessageId(id).map(deleted -> deleted > 0);
+    }
+
+    /**
+     * Attempt to update a message by id, with a single UPDATE statement
+     *
+     * @param message_text the message text to update
+     * @param message_id the id of the message to update
+     * @return false if the message doesn't exist or a validation check failed, true if the update was successful
+     */
+    public Mono<Boolean> updateMessageById(String message_text, Integer message_id) {
+        if (!messageTextIsValid(message_text)) {
+            return Mono.just(false);
+        }
+
+        return messageRepository.updateMessageText(message_id, message_text).map(updated -> updated > 0);
+    }
+
+    /**
+     * Find a page of the messages made by a given account, newest first
+     *
+     * @param id the id of the account to look for
+     * @param limit the requested page size, null for the default; clamped to the max page size
+     * @param after the cursor returned with the previous page, null for the first page
+     * @return empty if the limit or cursor is invalid, the page otherwise
+     */
+    public Mono<MessagePage> getMessagesByAccountId(Integer id, Integer limit, String after) {
+        Integer fetchSize = fetchSize(limit);
+        if (fetchSize == null) {
+            return Mono.empty();
+        }
+
+        if (after == null) {
+            return toTimePage(messageRepository.findFirstPageByPostedBy(id, fetchSize), fetchSize);
+        }
+
+        return Mono.justOrEmpty(timeCursor(after))
+            .flatMap(cursor -> toTimePage(
+                messageRepository.findPageByPostedByAfter(id, cursor.getTime_posted_epoch(), cursor.getMessage_id(), fetchSize),
+                fetchSize
+            ));
+    }
+
+    /**
+     * Find a page of the messages made by a given account in [since, until), newest
+     * first. Without either bound this is getMessagesByAccountId(id, limit, after).
+     *
+     * @param id the id of the account to look for
+     * @param since the earliest time_posted_epoch to include, null for no lower bound
+     * @param until the time_posted_epoch to stop before, null for no upper bound
+     * @param limit the requested page size, null for the default; clamped to the max page size
+     * @param after the cursor returned with the previous page, null for the first page
+     * @return empty if the range, limit or cursor is invalid, the page otherwise
+     */
+    public Mono<MessagePage> getMessagesByAccountId(Integer id, Long since, Long until, Integer limit, String after) {
+        if (since == null && until == null) {
+            return getMessagesByAccountId(id, limit, after);
+        }
+
+        Integer fetchSize = fetchSize(limit);
+        if (fetchSize == null || !timeRangeIsValid(since, until)) {
+            return Mono.empty();
+        }
+
+        if (after == null) {
+            return toPage(
+                messageRepository.findFirstPageByPostedByInRange(id, lowerBound(since), upperBound(until), fetchSize),
+                fetchSize
+            );
+        }
+
+        return Mono.justOrEmpty(timeCursor(after))
+            .flatMap(cursor -> toPage(
+                messageRepository.findPageByPostedByInRangeAfter(
+                    id, lowerBound(since), upperBound(until), cursor.getTime_posted_epoch(), cursor.getMessage_id(), fetchSize
+                ),
+                fetchSize
+            ));
+    }
+
+    /**
+     * Stream every message made by a given account, newest first.
+     *
+     * @param id the id of the account to look for
+     * @return the messages
+     */
+    public Flux<Message> streamMessagesByAccountId(Integer id) {
+        return messageRepository.findAllByPostedBy(id);
+    }
+
+    /**
+     * Check posted_by against the account id index, or the database until the index has loaded.
+     */
+    private Mono<Boolean> accountExists(Integer accountId) {
+        if (accountId == null) {
+            return Mono.just(false);
+        }
+
+        if (accountIdIndex.isLoaded()) {
+            return Mono.just(accountIdIndex.contains(accountId));
+        }
+
+        return accountRepository.existsById(accountId);
+    }
+
+    /**
+     * The number of rows to fetch for a keyset page: the page size plus one look-ahead
+     * row, so we know whether there is a following page without a count query.
+     *
+     * @param limit the requested page size, null for the default
+     * @return null if the limit is not positive
+     */
+    private Integer fetchSize(Integer limit) {
+        if (limit == null) {
+            limit = defaultPageSize;
+        }
+
+        if (limit < 1) {
+            return null;
+        }
+
+        return Math.min(limit, maxPageSize) + 1;
+    }
+
+    /**
+     * A time range is valid unless both bounds are given and since comes after until.
+     */
+    private static boolean timeRangeIsValid(Long since, Long until) {
+        return since == null || until == null || since <= until;
+    }
+
+    private static long lowerBound(Long since) {
+        return since == null ? Long.MIN_VALUE : since;
+    }
+
+    private static long upperBound(Long until) {
+        return until == null ? Long.MAX_VALUE : until;
+    }
+
+    /**
+     * Decode a cursor for a time-ordered page, which must carry a time_posted_epoch.
+     */
+    private static Optional<MessageCursor> timeCursor(String after) {
+        return MessageCursor.decode(after).filter(cursor -> cursor.getTime_posted_epoch() != null);
+    }
+
+    /**
+     * Trim the look-ahead row off a fetched page and derive the next cursor from it.
+     */
+    private Mono<MessagePage> toPage(Flux<Message> rows, int fetchSize) {
+        int pageSize = fetchSize - 1;
+        return rows.collectList().map(messages -> {
+            if (messages.size() <= pageSize) {
+                return new MessagePage(messages, null);
+            }
+
+            List<Message> page = messages.subList(0, pageSize);
+            Message last = page.get(pageSize - 1);
+            return new MessagePage(page, new MessageCursor(last.getTime_posted_epoch(), last.getMessage_id()).encode());
+        });
+    }
+
+    /**
+     * Trim the look-ahead row off a page in time order, with no next cursor if the
+     * page ends on a message without a time_posted_epoch, as in MessageService.
+     */
+    private Mono<MessagePage> toTimePage(Flux<Message> rows, int fetchSize) {
+        return toPage(rows, fetchSize).map(page -> {
+            List<Message> messages = page.getMessages();
+            if (page.getNextCursor() == null || messages.get(messages.size() - 1).getTime_posted_epoch() != null) {
+                return page;
+            }
+            return new MessagePage(messages, null);
+        });
+    }
+
+    private boolean messageTextIsValid(String message_text) {
+        return message_text != null && !message_text.isBlank() && message_text.length() < 255;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * An opaque keyset cursor pointing at the last hit of a page of search results.
+ * Encoded on the wire as url-safe base64 of "score-bits:message_id", carrying the
+ * exact float score so the next page starts exactly after it.
+ */
+public class SearchCursor {
+
+    private final float score;
+    private final Integer message_id;
+
+    public SearchCursor(float score, Integer message_id) {
+        this.score = score;
+        this.message_id = message_id;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    public Integer getMessage_id() {
+        return message_id;
+    }
+
+    /**
+     * Encode the cursor into its opaque string form.
+     *
+     * @return the encoded cursor
+     */
+    public String encode() {
+        String raw = Integer.toHexString(Float.floatToIntBits(score)) + ":" + message_id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor previously produced by {@link #encode()}.
+     *
+     * @param cursor the encoded cursor
+     * @return empty if the cursor is malformed, present cursor otherwise
+     */
+    public static Optional<SearchCursor> decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            if (separator < 0) {
+                return Optional.empty();
+            }
+
+            return Optional.of(new SearchCursor(
+                Float.intBitsToFloat(Integer.parseUnsignedInt(raw.substring(0, separator), 16)),
+                Integer.valueOf(raw.substring(separator + 1))
+            ));
+        } catch (IllegalArgumentException ex) {
+            return Optional.empty();
+        }
+    }
+}
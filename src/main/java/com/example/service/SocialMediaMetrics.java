@@ -0,0 +1,147 @@
+package com.example.service;
+
+import java.util.Optional;
+
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes the in-memory structures the services keep beside the database: the
+ * message, message JSON and account username caches (under Micrometer's usual cache.* names), the
+ * username filter, the account id index, the write-behind queue, the JDBC executor
+ * and the account stats reconciler. Every meter reads a counter the structure already maintains,
+ * so nothing is added to the request path.
+ */
+@Component
+public class SocialMediaMetrics implements MeterBinder {
+
+    private final MessageCache messageCache;
+    private final MessageJsonCache messageJsonCache;
+    private final AccountUsernameCache accountUsernameCache;
+    private final UsernameBloomFilter usernameFilter;
+    private final AccountIdIndex accountIdIndex;
+    private final Optional<MessageIngestionPipeline> ingestionPipeline;
+    private final JdbcExecutor jdbcExecutor;
+    private final AccountStatsReconciler accountStatsReconciler;
+
+    public SocialMediaMetrics(
+        MessageCache messageCache,
+        MessageJsonCache messageJsonCache,
+        AccountUsernameCache accountUsernameCache,
+        UsernameBloomFilter usernameFilter,
+        AccountIdIndex accountIdIndex,
+        Optional<MessageIngestionPipeline> ingestionPipeline,
+        JdbcExecutor jdbcExecutor,
+        AccountStatsReconciler accountStatsReconciler
+    ) {
+        this.messageCache = messageCache;
+        this.messageJsonCache = messageJsonCache;
+        this.accountUsernameCache = accountUsernameCache;
+        this.usernameFilter = usernameFilter;
+        this.accountIdIndex = accountIdIndex;
+        this.ingestionPipeline = ingestionPipeline;
+        this.jdbcExecutor = jdbcExecutor;
+        this.accountStatsReconciler = accountStatsReconciler;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("cache.size", messageCache, MessageCache::getSize)
+            .tag("cache", "messages")
+            .description("The approximate number of entries in the cache")
+            .register(registry);
+        FunctionCounter.builder("cache.gets", messageCache, cache -> cache.getStats().hitCount())
+            .tags("cache", "messages", "result", "hit")
+            .description("The number of times cache lookup methods have returned a cached value")
+            .register(registry);
+        FunctionCounter.builder("cache.gets", messageCache, cache -> cache.getStats().missCount())
+            .tags("cache", "messages", "result", "miss")
+            .description("The number of times cache lookup methods have returned an uncached value")
+            .register(registry);
+        FunctionCounter.builder("cache.evictions", messageCache, cache -> cache.getStats().evictionCount())
+            .tag("cache", "messages")
+            .description("The number of entries evicted from the cache")
+            .register(registry);
+        Gauge.builder("cache.load.duration", messageCache, cache -> {
+                CacheStats stats = cache.getStats();
+                return stats.loadCount() == 0 ? 0 : stats.averageLoadPenalty() / 1e9;
+            })
+            .tag("cache", "messages")
+            .description("The average time spent loading a missing entry")
+            .baseUnit("seconds")
+            .register(registry);
+
+        Gauge.builder("cache.size", messageJsonCache, MessageJsonCache::getSize)
+            .tag("cache", "message-json")
+            .description("The approximate number of entries in the cache")
+            .register(registry);
+        FunctionCounter.builder("cache.gets", messageJsonCache, cache -> cache.getStats().hitCount())
+            .tags("cache", "message-json", "result", "hit")
+            .description("The number of times cache lookup methods have returned a cached value")
+            .register(registry);
+        FunctionCounter.builder("cache.gets", messageJsonCache, cache -> cache.getStats().missCount())
+            .tags("cache", "message-json", "result", "miss")
+            .description("The number of times cache lookup methods have returned an uncached value")
+            .register(registry);
+        FunctionCounter.builder("cache.evictions", messageJsonCache, cache -> cache.getStats().evictionCount())
+            .tag("cache", "message-json")
+            .description("The number of entries evicted from the cache")
+            .register(registry);
+        Gauge.builder("social.media.json.cache.memory", messageJsonCache, MessageJsonCache::getMemoryBytes)
+            .description("The total size of the JSON held by the message JSON cache")
+            .baseUnit("bytes")
+            .register(registry);
+
+        Gauge.builder("cache.size", accountUsernameCache, AccountUsernameCache::getSize)
+            .tag("cache", "account-usernames")
+            .description("The approximate number of entries in the cache")
+            .register(registry);
+        FunctionCounter.builder("cache.gets", accountUsernameCache, cache -> cache.getStats().hitCount())
+            .tags("cache", "account-usernames", "result", "hit")
+            .description("The number of times cache lookup methods have returned a cached value")
+            .register(registry);
+        FunctionCounter.builder("cache.gets", accountUsernameCache, cache -> cache.getStats().missCount())
+            .tags("cache", "account-usernames", "result", "miss")
+            .description("The number of times cache lookup methods have returned an uncached value")
+            .register(registry);
+        FunctionCounter.builder("cache.evictions", accountUsernameCache, cache -> cache.getStats().evictionCount())
+            .tag("cache", "account-usernames")
+            .description("The number of entries evicted from the cache")
+            .register(registry);
+
+        Gauge.builder("social.media.username.filter.false.positive.rate", usernameFilter, UsernameBloomFilter::getObservedFalsePositiveRate)
+            .tag("kind", "observed")
+            .description("The fraction of username filter positives the database contradicted")
+            .register(registry);
+        Gauge.builder("social.media.username.filter.false.positive.rate", usernameFilter, UsernameBloomFilter::getExpectedFalsePositiveRate)
+            .tag("kind", "expected")
+            .description("The false positive rate expected from the number of usernames in the filter")
+            .register(registry);
+        Gauge.builder("social.media.username.filter.memory", usernameFilter, UsernameBloomFilter::getMemoryBytes)
+            .description("The size of the username filter's bit array")
+            .baseUnit("bytes")
+            .register(registry);
+
+        Gauge.builder("social.media.account.index.size", accountIdIndex, AccountIdIndex::getSize)
+            .description("The number of account ids in the account id index")
+            .register(registry);
+
+        ingestionPipeline.ifPresent(pipeline -> Gauge.builder("social.media.ingestion.queue.depth", pipeline, MessageIngestionPipeline::getQueueDepth)
+            .description("The number of messages waiting to be written")
+            .register(registry));
+
+        Gauge.builder("social.media.jdbc.executor.active", jdbcExecutor, JdbcExecutor::getActiveCount)
+            .description("The number of handlers running on the JDBC executor")
+            .register(registry);
+
+        FunctionCounter.builder("social.media.account.stats.drift", accountStatsReconciler, AccountStatsReconciler::getDriftedAccounts)
+            .description("The number of accounts whose message counters reconciliation found out of step")
+            .register(registry);
+    }
+}
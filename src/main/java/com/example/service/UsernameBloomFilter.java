@@ -0,0 +1,174 @@
+package com.example.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.repository.AccountRepository;
+
+/**
+ * In-memory Bloom filter of the usernames registered through the application
+ * plus those in the account table at startup. Rows written to the table any other
+ * way are missing from it, so a negative answer is not proof that a username is
+ * unregistered and is never used to skip a lookup. Login checks every username
+ * against the database, and counts the positive answers the database contradicts
+ * to report the filter's observed false positive rate.
+ *
+ * Until the filter has been loaded from the account table it answers "maybe"
+ * for everything.
+ */
+@Component
+public class UsernameBloomFilter {
+
+    private final Logger logger = LoggerFactory.getLogger(UsernameBloomFilter.class);
+
+    private final AccountRepository accountRepository;
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    private final AtomicLong insertions = new AtomicLong();
+    private final AtomicLong positives = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    private volatile boolean loaded = false;
+
+    public UsernameBloomFilter(
+        AccountRepository accountRepository,
+        @Value("${social-media.accounts.username-filter.expected-insertions:1000000}") long expectedInsertions,
+        @Value("${social-media.accounts.username-filter.false-positive-probability:0.01}") double falsePositiveProbability
+    ) {
+        this.accountRepository = accountRepository;
+
+        long optimalBits = (long) Math.ceil(
+            -expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2))
+        );
+        int words = (int) Math.max(1, (optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Load every existing username once the schema and seed data are in place.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        try (Stream<String> usernames = accountRepository.streamAllUsernames()) {
+            usernames.forEach(this::put);
+        }
+
+        loaded = true;
+        logger.info("Username filter loaded: {} usernames, {} bytes, expected false positive rate {}",
+            insertions.get(), getMemoryBytes(), getExpectedFalsePositiveRate());
+    }
+
+    /**
+     * Check whether a username might already be registered.
+     *
+     * @param username the username to check
+     * @return false if the username is definitely not registered, true if it might be
+     */
+    public boolean mightContain(String username) {
+        if (!loaded) {
+            return true;
+        }
+
+        long hash = hash(username);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = index((long) h1 + (long) i * h2);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        positives.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Record a registered username.
+     *
+     * @param username the username to add
+     */
+    public void put(String username) {
+        long hash = hash(username);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = index((long) h1 + (long) i * h2);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = bits.get(word)) & mask) == 0) {
+                if (bits.compareAndSet(word, current, current | mask)) {
+                    break;
+                }
+            }
+        }
+
+        insertions.incrementAndGet();
+    }
+
+    /**
+     * Record that a "maybe" answer turned out to be wrong once the database was checked.
+     */
+    public void recordFalsePositive() {
+        falsePositives.incrementAndGet();
+    }
+
+    /**
+     * @return the false positive rate expected from the current number of insertions
+     */
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions.get() / bitCount), hashCount);
+    }
+
+    /**
+     * @return the fraction of "maybe" answers that the database later contradicted
+     */
+    public double getObservedFalsePositiveRate() {
+        long total = positives.get();
+        return total == 0 ? 0 : (double) falsePositives.get() / total;
+    }
+
+    /**
+     * @return the size of the bit array in bytes
+     */
+    public long getMemoryBytes() {
+        return bitCount / 8;
+    }
+
+    private long index(long combinedHash) {
+        return (combinedHash & Long.MAX_VALUE) % bitCount;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer.
+     */
+    private static long hash(String username) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : username.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
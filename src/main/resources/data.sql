@@ -1,25 +1,72 @@
+drop table if exists timeline_entry;
+drop table if exists follow;
 drop table if exists message;
 drop table if exists account;
+drop sequence if exists message_seq;
+-- Hands out message ids 50 at a time (Hibernate pooled optimizer) so inserts can be JDBC-batched
+create sequence message_seq start with 1 increment by 50;
 create table account (
-    account_id int primary key auto_increment,
-    username varchar(255) not null unique,
-    password varchar(255)
+    -- default on null lets Hibernate's identity insert (which binds null for the id) use the generator
+    account_id int generated by default as identity default on null primary key,
+    username varchar(255) not null,
+    password varchar(255),
+    -- Kept up to date by every message insert and delete, in the same transaction, so
+    -- an account's stats are a primary-key read however many messages it has.
+    message_count bigint default 0 not null,
+    first_posted_epoch bigint,
+    last_posted_epoch bigint,
+    constraint account_username_key unique (username)
 );
 create table message (
-    message_id int primary key auto_increment,
+    message_id int primary key,
     posted_by int,
     message_text varchar(255),
     time_posted_epoch bigint,
+    -- Optimistic-locking version of the row, bumped by every update; doubles as the ETag
+    version int default 0 not null,
     foreign key (posted_by) references  account(account_id)
 );
+-- Serves per-account timelines newest-first straight from the index. message_text is
+-- carried along so the index covers the whole row and H2 never goes back to the table.
+-- The price is a second copy of every message_text (up to 255 characters), stored
+-- and written again on every insert and text update.
+create index message_posted_by_time_idx on message (posted_by, time_posted_epoch desc, message_id, message_text);
+-- Serves time-range queries over all messages newest-first, covering the row the same way.
+-- That makes a third copy of every message_text: with both indexes, message text takes
+-- about three times its size, and each insert or text update writes it three times.
+create index message_time_idx on message (time_posted_epoch desc, message_id, posted_by, message_text);
+-- Who follows whom. The primary key answers "who does X follow"; follow_followee_idx
+-- answers "who follows X" for fan-out.
+create table follow (
+    follower_id int not null,
+    followee_id int not null,
+    primary key (follower_id, followee_id),
+    foreign key (follower_id) references account(account_id),
+    foreign key (followee_id) references account(account_id)
+);
+create index follow_followee_idx on follow (followee_id, follower_id);
+-- Write-through copy of the in-memory home timelines, read back at startup. Entries
+-- go with their message, so deleting a message stays a single statement.
+create table timeline_entry (
+    account_id int not null,
+    message_id int not null,
+    posted_by int not null,
+    time_posted_epoch bigint not null,
+    primary key (account_id, message_id),
+    foreign key (account_id) references account(account_id),
+    foreign key (message_id) references message(message_id) on delete cascade
+);
 
 -- Starting test values with ids of 9999 to avoid test issues
-insert into account values (9999, 'testuser1', 'password');
-insert into account values (9998, 'testuser2', 'password');
-insert into account values (9997, 'testuser3', 'password');
-insert into account values (9996, 'testuser4', 'password');
+insert into account (account_id, username, password) values (9999, 'testuser1', 'password');
+insert into account (account_id, username, password) values (9998, 'testuser2', 'password');
+insert into account (account_id, username, password) values (9997, 'testuser3', 'password');
+insert into account (account_id, username, password) values (9996, 'testuser4', 'password');
 
-insert into message values (9999, 9999,'test message 1',1669947792);
-insert into message values (9997, 9997,'test message 2',1669947792);
-insert into message values (9996, 9996,'test message 3',1669947792);
+insert into message (message_id, posted_by, message_text, time_posted_epoch) values (9999, 9999,'test message 1',1669947792);
+insert into message (message_id, posted_by, message_text, time_posted_epoch) values (9997, 9997,'test message 2',1669947792);
+insert into message (message_id, posted_by, message_text, time_posted_epoch) values (9996, 9996,'test message 3',1669947792);
 
+update account set (message_count, first_posted_epoch, last_posted_epoch) = (
+    select count(*), min(time_posted_epoch), max(time_posted_epoch) from message where posted_by = account_id
+);
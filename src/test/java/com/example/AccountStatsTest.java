@@ -0,0 +1,172 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.controller.StatementCountHeaderAdvice;
+import com.example.service.AccountStatsReconciler;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@DisabledIfSystemProperty(named = "spring.profiles.active", matches = "reactive",
+    disabledReason = "account stats are only served by the servlet stack")
+@ExtendWith(OutputCaptureExtension.class)
+public class AccountStatsTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    public void setUp(String... args) throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * The seeded messages are counted, and an account without messages has no post times.
+     */
+    @Test
+    public void seededStats() throws IOException, InterruptedException {
+        setUp();
+        assertStats(9999, 1, 1669947792L, 1669947792L);
+        assertStats(9998, 0, null, null);
+
+        HttpResponse<String> response = get("/accounts/1/stats");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("", response.body());
+    }
+
+    /**
+     * Creating and deleting messages moves the count and the first and last post times.
+     */
+    @Test
+    public void createAndDeleteUpdateStats() throws IOException, InterruptedException {
+        setUp();
+        int later = messageId(send("/messages", "POST", message(9999, "later", "1669947800")));
+        int earlier = messageId(send("/messages", "POST", message(9999, "earlier", "1669947700")));
+        Assertions.assertEquals(200, send("/messages", "POST", message(9999, "no time", "null")).statusCode());
+        assertStats(9999, 4, 1669947700L, 1669947800L);
+
+        Assertions.assertEquals(200, send("/messages/" + later, "DELETE", null).statusCode());
+        assertStats(9999, 3, 1669947700L, 1669947792L);
+        Assertions.assertEquals(200, send("/messages/" + earlier, "DELETE", null).statusCode());
+        assertStats(9999, 2, 1669947792L, 1669947792L);
+        Assertions.assertEquals(200, send("/messages/9999", "DELETE", null).statusCode());
+        assertStats(9999, 1, null, null);
+    }
+
+    /**
+     * Batches count every valid item against its author, and nothing for invalid ones.
+     */
+    @Test
+    public void batchUpdatesStats() throws IOException, InterruptedException {
+        setUp();
+        HttpResponse<String> response = send("/messages/batch", "POST", "["
+            + message(9998, "first", "100") + ","
+            + message(9998, "second", "300") + ","
+            + message(9997, "third", "200") + ","
+            + message(1, "no account", "400") + ","
+            + message(9998, "", "500")
+            + "]");
+        Assertions.assertEquals(200, response.statusCode());
+        assertStats(9998, 2, 100L, 300L);
+        assertStats(9997, 2, 200L, 1669947792L);
+    }
+
+    /**
+     * Messages written through the ingestion pipeline are counted in its group commit.
+     */
+    @Test
+    public void ingestionPipelineUpdatesStats() throws IOException, InterruptedException {
+        setUp("--social-media.messages.ingestion.enabled=true");
+        Assertions.assertEquals(200, send("/messages", "POST", message(9998, "queued", "1669947800")).statusCode());
+        assertStats(9998, 1, 1669947800L, 1669947800L);
+    }
+
+    /**
+     * Reading the stats is one primary-key lookup.
+     */
+    @Test
+    public void statsReadIsOneStatement() throws IOException, InterruptedException {
+        setUp();
+        HttpResponse<String> response = get("/accounts/9999/stats");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("1", response.headers().firstValue(StatementCountHeaderAdvice.STATEMENT_COUNT_HEADER).orElseThrow());
+    }
+
+    /**
+     * Messages written behind the counters' back are found, reported and corrected.
+     */
+    @Test
+    public void reconciliationCorrectsDrift(CapturedOutput output) throws IOException, InterruptedException {
+        setUp();
+        AccountStatsReconciler reconciler = app.getBean(AccountStatsReconciler.class);
+        Assertions.assertEquals(0, reconciler.reconcile());
+
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("INSERT INTO message (message_id, posted_by, message_text, time_posted_epoch) VALUES (1, 9998, 'bulk loaded', 1669947000)");
+        jdbcTemplate.update("DELETE FROM message WHERE message_id = 9997");
+        assertStats(9998, 0, null, null);
+
+        Assertions.assertEquals(2, reconciler.reconcile());
+        Assertions.assertTrue(output.getOut().contains("Account 9998 stats drifted"));
+        assertStats(9998, 1, 1669947000L, 1669947000L);
+        assertStats(9997, 0, null, null);
+        Assertions.assertEquals(0, reconciler.reconcile());
+        Assertions.assertEquals(2, reconciler.getDriftedAccounts());
+    }
+
+    private void assertStats(int account_id, long count, Long first, Long last) throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/accounts/" + account_id + "/stats");
+        Assertions.assertEquals(200, response.statusCode());
+        JsonNode stats = objectMapper.readTree(response.body());
+        Assertions.assertEquals(account_id, stats.get("account_id").asInt());
+        Assertions.assertEquals(count, stats.get("message_count").asLong());
+        Assertions.assertEquals(first, stats.get("first_posted_epoch").isNull() ? null : stats.get("first_posted_epoch").asLong());
+        Assertions.assertEquals(last, stats.get("last_posted_epoch").isNull() ? null : stats.get("last_posted_epoch").asLong());
+    }
+
+    private int messageId(HttpResponse<String> response) throws IOException {
+        Assertions.assertEquals(200, response.statusCode());
+        return objectMapper.readTree(response.body()).get("message_id").asInt();
+    }
+
+    private static String message(int posted_by, String text, String time) {
+        return "{\"posted_by\":" + posted_by + ",\"message_text\":\"" + text + "\",\"time_posted_epoch\":" + time + "}";
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> send(String path, String method, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
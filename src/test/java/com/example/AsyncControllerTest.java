@@ -0,0 +1,181 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.service.JdbcExecutor;
+
+/**
+ * Runs the app in async mode with only two servlet container threads and a JDBC
+ * executor of four, then makes the database slow by holding a row lock on
+ * message 9999 from another connection, so every PATCH of that message blocks.
+ */
+@DisabledIfSystemProperty(named = "spring.profiles.active", matches = "reactive", disabledReason = "The JDBC executor only backs the servlet stack")
+public class AsyncControllerTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    Connection lockingConnection;
+
+    public void setUp(String... extraArgs) throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        List<String> args = new ArrayList<>(List.of(
+            "--social-media.async.enabled=true",
+            "--social-media.async.pool-size=4",
+            "--social-media.async.timeouts.messages.update=3s",
+            "--server.tomcat.threads.max=2",
+            "--server.tomcat.threads.min-spare=2",
+            "--spring.datasource.url=jdbc:h2:mem:testdb;LOCK_TIMEOUT=10000"
+        ));
+        args.addAll(List.of(extraArgs));
+        app = SpringApplication.run(SocialMediaApp.class, args.toArray(new String[0]));
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException, SQLException {
+        if (lockingConnection != null) {
+            lockingConnection.rollback();
+            lockingConnection.close();
+        }
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * With three slow PATCH requests in flight - more than there are container threads -
+     * GET localhost:8080/messages/9997 still answers promptly, and the PATCH requests
+     * complete once the database is fast again.
+     */
+    @Test
+    public void containerThreadsStayFreeWhileDatabaseIsSlow() throws Exception {
+        setUp();
+        lockMessage(9999);
+
+        List<CompletableFuture<HttpResponse<String>>> slow = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            slow.add(webClient.sendAsync(patchRequest(9999), HttpResponse.BodyHandlers.ofString()));
+        }
+        awaitActiveCount(3);
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = webClient.send(getRequest(9997), HttpResponse.BodyHandlers.ofString());
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertTrue(elapsedMillis < 1000, "GET took " + elapsedMillis + " ms while the database was slow");
+        for (CompletableFuture<HttpResponse<String>> future : slow) {
+            Assertions.assertFalse(future.isDone(), "PATCH finished while its row was locked");
+        }
+
+        lockingConnection.rollback();
+        for (CompletableFuture<HttpResponse<String>> future : slow) {
+            Assertions.assertEquals(200, future.join().statusCode());
+        }
+    }
+
+    /**
+     * With every JDBC executor thread blocked and no queue, another request is
+     * rejected right away.
+     *
+     * Expected Response:
+     *  Status Code: 503 with a Retry-After header, well before any timeout
+     */
+    @Test
+    public void fullExecutorRejectsImmediately() throws Exception {
+        setUp("--social-media.async.queue-capacity=0");
+        lockMessage(9999);
+
+        for (int i = 0; i < 4; i++) {
+            webClient.sendAsync(patchRequest(9999), HttpResponse.BodyHandlers.ofString());
+        }
+        awaitActiveCount(4);
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = webClient.send(getRequest(9997), HttpResponse.BodyHandlers.ofString());
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        Assertions.assertEquals(503, response.statusCode());
+        Assertions.assertTrue(response.headers().firstValue("Retry-After").isPresent());
+        Assertions.assertTrue(elapsedMillis < 1000, "Rejection took " + elapsedMillis + " ms");
+    }
+
+    /**
+     * With every JDBC executor thread blocked, a PATCH waiting in the executor's queue
+     * when its 3 second endpoint timeout passes is dropped. The blocked PATCH requests
+     * are past the queue, so they outlive the timeout and still complete.
+     *
+     * Expected Response:
+     *  Status Code: 503 with a Retry-After header after roughly the timeout, and the
+     *  queued PATCH never changes message 9997
+     */
+    @Test
+    public void queuedRequestTimesOut() throws Exception {
+        setUp("--social-media.async.queue-capacity=1");
+        lockMessage(9999);
+
+        List<CompletableFuture<HttpResponse<String>>> slow = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            slow.add(webClient.sendAsync(patchRequest(9999), HttpResponse.BodyHandlers.ofString()));
+        }
+        awaitActiveCount(4);
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = webClient.send(patchRequest(9997), HttpResponse.BodyHandlers.ofString());
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        Assertions.assertEquals(503, response.statusCode());
+        Assertions.assertTrue(response.headers().firstValue("Retry-After").isPresent());
+        Assertions.assertTrue(elapsedMillis >= 3000 && elapsedMillis < 8000, "Timeout took " + elapsedMillis + " ms");
+
+        lockingConnection.rollback();
+        for (CompletableFuture<HttpResponse<String>> future : slow) {
+            Assertions.assertEquals(200, future.join().statusCode());
+        }
+        Assertions.assertFalse(webClient.send(getRequest(9997), HttpResponse.BodyHandlers.ofString()).body().contains("updated message"));
+    }
+
+    private void lockMessage(int messageId) throws SQLException {
+        lockingConnection = app.getBean(DataSource.class).getConnection();
+        lockingConnection.setAutoCommit(false);
+        try (Statement statement = lockingConnection.createStatement()) {
+            statement.executeUpdate("update message set message_text = 'locked' where message_id = " + messageId);
+        }
+    }
+
+    private void awaitActiveCount(int count) throws InterruptedException {
+        JdbcExecutor jdbcExecutor = app.getBean(JdbcExecutor.class);
+        for (int i = 0; i < 100 && jdbcExecutor.getActiveCount() < count; i++) {
+            Thread.sleep(50);
+        }
+        Assertions.assertEquals(count, jdbcExecutor.getActiveCount());
+    }
+
+    private HttpRequest patchRequest(int messageId) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+
+    private HttpRequest getRequest(int messageId) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .build();
+    }
+}
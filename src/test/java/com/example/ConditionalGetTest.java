@@ -0,0 +1,137 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+@DisabledIfSystemProperty(named = "spring.profiles.active", matches = "reactive",
+    disabledReason = "ETags are only served by the servlet stack")
+public class ConditionalGetTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    Statistics statistics;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        app = SpringApplication.run(SocialMediaApp.class);
+        statistics = app.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * A message's ETag is its id and version after the startup time; the version stays
+     * out of the JSON, and a cached message is revalidated without a query.
+     */
+    @Test
+    public void messageETagFollowsVersion() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/messages/9999", null);
+        Assertions.assertEquals(200, response.statusCode());
+        String etag = etag(response);
+        Assertions.assertTrue(etag.matches("\"[0-9a-z]+-9999-0\""), etag);
+        Assertions.assertFalse(response.body().contains("version"), response.body());
+
+        statistics.clear();
+        response = get("/messages/9999", etag);
+        Assertions.assertEquals(304, response.statusCode());
+        Assertions.assertEquals("", response.body());
+        Assertions.assertEquals(etag, etag(response));
+        Assertions.assertEquals(0, statistics.getPrepareStatementCount());
+
+        Assertions.assertEquals(200, send("/messages/9999", "PATCH", "{\"message_text\":\"updated message\"}").statusCode());
+        response = get("/messages/9999", etag);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(etag.replace("-9999-0", "-9999-1"), etag(response));
+        Assertions.assertTrue(response.body().contains("updated message"), response.body());
+    }
+
+    /**
+     * An account's pages are revalidated from memory until one of its messages changes.
+     */
+    @Test
+    public void accountMessagesETagFollowsChanges() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/accounts/9999/messages", null);
+        Assertions.assertEquals(200, response.statusCode());
+        String etag = etag(response);
+
+        statistics.clear();
+        response = get("/accounts/9999/messages", etag);
+        Assertions.assertEquals(304, response.statusCode());
+        Assertions.assertEquals("", response.body());
+        Assertions.assertEquals(0, statistics.getPrepareStatementCount());
+
+        Assertions.assertEquals(200, send("/messages", "POST",
+            "{\"posted_by\":9997,\"message_text\":\"another account\",\"time_posted_epoch\":1669947793}").statusCode());
+        Assertions.assertEquals(304, get("/accounts/9999/messages", etag).statusCode());
+
+        Assertions.assertEquals(200, send("/messages", "POST",
+            "{\"posted_by\":9999,\"message_text\":\"new message\",\"time_posted_epoch\":1669947793}").statusCode());
+        etag = assertChanged(etag);
+
+        Assertions.assertEquals(200, send("/messages/9999", "PATCH", "{\"message_text\":\"updated message\"}").statusCode());
+        etag = assertChanged(etag);
+
+        Assertions.assertEquals(200, send("/messages/9999", "DELETE", null).statusCode());
+        assertChanged(etag);
+    }
+
+    /**
+     * If-None-Match lists, weak tags and * are matched as for any GET.
+     */
+    @Test
+    public void ifNoneMatchForms() throws IOException, InterruptedException {
+        String etag = etag(get("/messages/9999", null));
+        Assertions.assertEquals(304, get("/messages/9999", "\"5\", W/" + etag).statusCode());
+        Assertions.assertEquals(304, get("/messages/9999", "*").statusCode());
+        Assertions.assertEquals(200, get("/messages/9999", "\"5\"").statusCode());
+        Assertions.assertEquals(200, get("/messages/1", "*").statusCode());
+    }
+
+    private String assertChanged(String etag) throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/accounts/9999/messages", etag);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertNotEquals(etag, etag(response));
+        return etag(response);
+    }
+
+    private static String etag(HttpResponse<String> response) {
+        return response.headers().firstValue("ETag").orElseThrow();
+    }
+
+    private HttpResponse<String> get(String path, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path));
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> send(String path, String method, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
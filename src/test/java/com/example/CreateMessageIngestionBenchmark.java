@@ -0,0 +1,95 @@
+package com.example;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Compares throughput and p99 latency of POST /messages with and without
+ * write-behind ingestion. Only runs when asked for:
+ *
+ *   mvn test -Dtest=CreateMessageIngestionBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class CreateMessageIngestionBenchmark {
+
+    static final int THREADS = 64;
+    // Warm-up plus measured inserts stay below the seeded message ids (9996+), which
+    // generated ids would otherwise collide with.
+    static final int REQUESTS = 8_000;
+
+    @Test
+    public void compareSynchronousAndWriteBehind() throws InterruptedException {
+        run("synchronous", "--social-media.messages.ingestion.enabled=false");
+        run("write-behind", "--social-media.messages.ingestion.enabled=true");
+    }
+
+    private void run(String name, String... args) throws InterruptedException {
+        ApplicationContext app = SpringApplication.run(SocialMediaApp.class, args);
+        try {
+            HttpClient webClient = HttpClient.newHttpClient();
+            // Warm up the JIT and connection pool before measuring.
+            measure(webClient, REQUESTS / 10);
+            long[] latencies = new long[REQUESTS];
+            long start = System.nanoTime();
+            int failures = measure(webClient, latencies);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            System.out.printf("%s: %.0f req/s, p50 %.2f ms, p99 %.2f ms, %d failures%n",
+                name, REQUESTS / seconds,
+                latencies[REQUESTS / 2] / 1e6, latencies[(int) (REQUESTS * 0.99)] / 1e6, failures);
+            Assertions.assertEquals(0, failures);
+        } finally {
+            SpringApplication.exit(app);
+        }
+    }
+
+    private int measure(HttpClient webClient, int requests) throws InterruptedException {
+        return measure(webClient, new long[requests]);
+    }
+
+    private int measure(HttpClient webClient, long[] latencies) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < latencies.length) {
+                    String json = "{\"posted_by\":9999,\"message_text\": \"message " + i + "\",\"time_posted_epoch\": 1669947792}";
+                    HttpRequest request = HttpRequest.newBuilder()
+                            .uri(URI.create("http://localhost:8080/messages"))
+                            .POST(HttpRequest.BodyPublishers.ofString(json))
+                            .header("Content-Type", "application/json")
+                            .build();
+                    long start = System.nanoTime();
+                    try {
+                        if (webClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (Exception ex) {
+                        failures.incrementAndGet();
+                    }
+                    latencies[i] = System.nanoTime() - start;
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.MINUTES);
+        return failures.get();
+    }
+}
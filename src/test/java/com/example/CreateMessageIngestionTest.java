@@ -0,0 +1,196 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.example.service.MessageIngestionPipeline;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@DisabledIfSystemProperty(named = "spring.profiles.active", matches = "reactive", disabledReason = "The ingestion pipeline only backs the servlet stack")
+public class CreateMessageIngestionTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Connection lockingConnection;
+
+    /**
+     * Reset the database and restart the app with write-behind ingestion enabled.
+     * @throws InterruptedException
+     */
+    public void setUp(String... extraArgs) throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        List<String> args = new ArrayList<>(List.of("--social-media.messages.ingestion.enabled=true"));
+        args.addAll(List.of(extraArgs));
+        app = SpringApplication.run(SocialMediaApp.class, args.toArray(new String[0]));
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException, SQLException {
+        if (lockingConnection != null) {
+            lockingConnection.rollback();
+            lockingConnection.close();
+        }
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending many concurrent requests to POST localhost:8080/messages with ingestion enabled
+     *
+     * Expected Response:
+     *  Every Status Code: 200, each with a distinct generated message_id
+     *  GET localhost:8080/messages/{message_id} returns each created message
+     */
+    @Test
+    public void createMessagesConcurrently() throws IOException, InterruptedException {
+        setUp();
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String json = "{\"posted_by\":9999,\"message_text\": \"message " + i + "\",\"time_posted_epoch\": 1669947792}";
+            HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .header("Content-Type", "application/json")
+                    .build();
+            responses.add(webClient.sendAsync(postMessageRequest, HttpResponse.BodyHandlers.ofString()));
+        }
+
+        Set<Integer> ids = new HashSet<>();
+        for (CompletableFuture<HttpResponse<String>> future : responses) {
+            HttpResponse<String> response = future.join();
+            Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+            Message created = objectMapper.readValue(response.body(), Message.class);
+            Assertions.assertNotNull(created.getMessage_id());
+            Assertions.assertTrue(ids.add(created.getMessage_id()), "Duplicate message_id " + created.getMessage_id());
+
+            HttpRequest getMessageRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages/" + created.getMessage_id()))
+                    .build();
+            HttpResponse<String> stored = webClient.send(getMessageRequest, HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(created, objectMapper.readValue(stored.body(), Message.class));
+        }
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with ingestion enabled and a user not found
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void createMessageUserNotInDb() throws IOException, InterruptedException {
+        setUp();
+        String json = "{\"posted_by\":5050,\"message_text\": \"hello message\",\"time_posted_epoch\": 1669947792}";
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(400, response.statusCode(), "Expected Status Code 400 - Actual Code was: " + response.statusCode());
+    }
+
+    /**
+     * A group holding one good message and one whose author does not exist fails to
+     * commit, so each message is retried in its own transaction. The author check
+     * happens before a message is queued, so the bad one is handed to the pipeline
+     * directly, with a long enough max delay that both land in the same group.
+     *
+     * Expected Result:
+     *  The good message completes with its generated message_id and can be fetched,
+     *  the bad message fails on its own
+     */
+    @Test
+    public void failedGroupRetriesEachMessage() throws IOException, InterruptedException {
+        setUp("--social-media.messages.ingestion.max-delay=1s");
+        MessageIngestionPipeline pipeline = app.getBean(MessageIngestionPipeline.class);
+
+        CompletableFuture<Message> good;
+        CompletableFuture<Message> bad;
+        try {
+            good = pipeline.submit(new Message(9999, "good message", 1669947792L));
+            bad = pipeline.submit(new Message(5050, "bad message", 1669947792L));
+        } catch (Exception ex) {
+            throw new AssertionError(ex);
+        }
+
+        Message created = good.join();
+        Assertions.assertNotNull(created.getMessage_id());
+        Assertions.assertThrows(CompletionException.class, bad::join);
+
+        HttpRequest getMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + created.getMessage_id()))
+                .build();
+        HttpResponse<String> stored = webClient.send(getMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, stored.statusCode());
+        Assertions.assertEquals("good message", objectMapper.readValue(stored.body(), Message.class).getMessage_text());
+    }
+
+    /**
+     * With the writer blocked on a row lock held by another connection and a queue of
+     * one, a first message is being written, a second waits in the queue and a third
+     * has nowhere to go.
+     *
+     * Expected Response:
+     *  Status Code: 503 with a Retry-After header for the third message, and 200 for
+     *  the first two once the lock is released
+     */
+    @Test
+    public void fullQueueIsRejected() throws Exception {
+        setUp("--social-media.messages.ingestion.queue-capacity=1",
+            "--spring.datasource.url=jdbc:h2:mem:testdb;LOCK_TIMEOUT=10000");
+        lockingConnection = app.getBean(DataSource.class).getConnection();
+        lockingConnection.setAutoCommit(false);
+        try (Statement statement = lockingConnection.createStatement()) {
+            statement.executeUpdate("update account set message_count = message_count where account_id = 9999");
+        }
+
+        List<CompletableFuture<HttpResponse<String>>> accepted = new ArrayList<>();
+        accepted.add(webClient.sendAsync(postRequest("first message"), HttpResponse.BodyHandlers.ofString()));
+        Thread.sleep(500);
+        accepted.add(webClient.sendAsync(postRequest("second message"), HttpResponse.BodyHandlers.ofString()));
+        Thread.sleep(500);
+
+        HttpResponse<String> response = webClient.send(postRequest("third message"), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(503, response.statusCode(), "Expected Status Code 503 - Actual Code was: " + response.statusCode());
+        Assertions.assertTrue(response.headers().firstValue("Retry-After").isPresent());
+
+        lockingConnection.rollback();
+        for (CompletableFuture<HttpResponse<String>> future : accepted) {
+            Assertions.assertEquals(200, future.join().statusCode());
+        }
+    }
+
+    private HttpRequest postRequest(String text) {
+        String json = "{\"posted_by\":9999,\"message_text\": \"" + text + "\",\"time_posted_epoch\": 1669947792}";
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+}
@@ -5,6 +5,7 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.List;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -13,7 +14,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.boot.SpringApplication;
 import org.springframework.context.ApplicationContext;
 
+import com.example.entity.Account;
 import com.example.entity.Message;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class CreateMessageTest {	
@@ -126,4 +129,71 @@ public class CreateMessageTest {
         int status = response.statusCode();
         Assertions.assertEquals(400, status, "Expected Status Code 400 - Actual Code was: " + status);
     }
+
+    /**
+     * Sending an http request to POST localhost:8080/register, then POST localhost:8080/messages as the new account
+     * 
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of message object posted by the new account
+     */
+    @Test
+    public void createMessageForNewlyRegisteredUser() throws IOException, InterruptedException {
+        String accountJson = "{\"username\":\"newposter\",\"password\":\"password\"}";
+        HttpRequest registerRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString(accountJson))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> registerResponse = webClient.send(registerRequest, HttpResponse.BodyHandlers.ofString());
+        Account account = objectMapper.readValue(registerResponse.body().toString(), Account.class);
+
+    	String json = "{\"posted_by\":" + account.getAccount_id() + ",\"message_text\": \"hello message\",\"time_posted_epoch\": 1669947792}";
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        Message actualResult = objectMapper.readValue(response.body().toString(), Message.class);
+        Assertions.assertEquals(account.getAccount_id(), actualResult.getPosted_by());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with two valid messages, a blank message
+     * and a message from a user not in the db
+     * 
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one result per message, in order; 200 with the created message or 400 with none
+     */
+    @Test
+    public void createMessagesBatch() throws IOException, InterruptedException {
+        String json = "["
+                + "{\"posted_by\":9999,\"message_text\": \"first\",\"time_posted_epoch\": 1669947792},"
+                + "{\"posted_by\":9999,\"message_text\": \"\",\"time_posted_epoch\": 1669947792},"
+                + "{\"posted_by\":5050,\"message_text\": \"unknown user\",\"time_posted_epoch\": 1669947792},"
+                + "{\"posted_by\":9998,\"message_text\": \"second\",\"time_posted_epoch\": 1669947793}"
+                + "]";
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        JsonNode results = objectMapper.readTree(response.body().toString());
+        Assertions.assertEquals(4, results.size());
+        Assertions.assertEquals(List.of(200, 400, 400, 200), List.of(
+                results.get(0).get("status").asInt(), results.get(1).get("status").asInt(),
+                results.get(2).get("status").asInt(), results.get(3).get("status").asInt()));
+        Message first = objectMapper.treeToValue(results.get(0).get("message"), Message.class);
+        Message second = objectMapper.treeToValue(results.get(3).get("message"), Message.class);
+        Assertions.assertEquals(new Message(1, 9999, "first", 1669947792L), first);
+        Assertions.assertEquals(new Message(2, 9998, "second", 1669947793L), second);
+        Assertions.assertTrue(results.get(1).get("message").isNull());
+    }
 }
@@ -6,12 +6,18 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.SpringApplication;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -53,11 +59,17 @@ public class DeleteMessageByMessageIdTest {
                 .uri(URI.create("http://localhost:8080/messages/9999"))
                 .DELETE()
                 .build();
+        Statistics statistics = app.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
         HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
         int status = response.statusCode();
         Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
         Integer actualResult = objectMapper.readValue(response.body().toString(), Integer.class);
         Assertions.assertTrue(actualResult.equals(1), "Expected to modify 1 row, but actually modified " + actualResult + " rows.");
+        // Hibernate statistics only see the JPA stack's statements
+        if (!app.getBean(Environment.class).acceptsProfiles(Profiles.of("reactive"))) {
+            Assertions.assertEquals(1, statistics.getPrepareStatementCount(), "Expected a single SQL statement for the DELETE");
+        }
     }
 
     /**
@@ -79,4 +91,31 @@ public class DeleteMessageByMessageIdTest {
         String actualResult = response.body().toString();
         Assertions.assertTrue(actualResult.equals(""), "Expected empty response body, but actually " + actualResult + ".");
     }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/9999 (caching it), then DELETE, then GET again
+     * 
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the second GET is empty
+     */
+    @Test
+    public void deleteMessageThenGetReturnsEmpty() throws IOException, InterruptedException {
+        HttpRequest getRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .build();
+        HttpResponse<String> firstGet = webClient.send(getRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertFalse(firstGet.body().toString().isEmpty(), "Expected the message before deleting it");
+
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .DELETE()
+                .build();
+        HttpResponse<String> deleteResponse = webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString());
+        int status = deleteResponse.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+
+        HttpResponse<String> secondGet = webClient.send(getRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertTrue(secondGet.body().toString().isEmpty(), "Expected empty response body, not a cached copy");
+    }
 }
@@ -0,0 +1,223 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.controller.StatementCountHeaderAdvice;
+import com.example.entity.Message;
+import com.example.repository.FollowRepository;
+import com.example.repository.TimelineRepository;
+import com.example.service.FeedService;
+import com.example.service.FollowGraph;
+import com.example.service.HomeTimelines;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@DisabledIfSystemProperty(named = "spring.profiles.active", matches = "reactive",
+    disabledReason = "follows and home feeds are only served by the servlet stack")
+public class FeedTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    public void setUp(String... args) throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Following an account fills the feed with its existing messages, and its new
+     * messages are pushed to the follower as they are posted.
+     */
+    @Test
+    public void followBackfillsAndFansOut() throws IOException, InterruptedException {
+        setUp();
+        Assertions.assertEquals(List.of(), feed(get("/accounts/9999/feed")));
+
+        HttpResponse<String> response = send("/accounts/9999/following/9997", "POST");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("1", response.body());
+        Assertions.assertEquals(List.of("test message 2"), texts(feed(get("/accounts/9999/feed"))));
+
+        Assertions.assertEquals(200, postMessage(9997, "followed message").statusCode());
+        Assertions.assertEquals(200, postMessage(9996, "unfollowed message").statusCode());
+        Assertions.assertEquals(List.of("followed message", "test message 2"), texts(feed(get("/accounts/9999/feed"))));
+    }
+
+    /**
+     * Following twice is harmless, and unfollowing drops the account's messages.
+     */
+    @Test
+    public void unfollowRemovesMessages() throws IOException, InterruptedException {
+        setUp();
+        Assertions.assertEquals(200, send("/accounts/9999/following/9997", "POST").statusCode());
+        Assertions.assertEquals(200, send("/accounts/9999/following/9997", "POST").statusCode());
+        Assertions.assertEquals(200, send("/accounts/9999/following/9996", "POST").statusCode());
+        Assertions.assertEquals(List.of("test message 3", "test message 2"), texts(feed(get("/accounts/9999/feed"))));
+
+        HttpResponse<String> response = send("/accounts/9999/following/9997", "DELETE");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("1", response.body());
+        Assertions.assertEquals(List.of("test message 3"), texts(feed(get("/accounts/9999/feed"))));
+
+        response = send("/accounts/9999/following/9997", "DELETE");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("", response.body());
+    }
+
+    /**
+     * Pages follow the X-Next-Cursor header until the feed runs out.
+     */
+    @Test
+    public void feedIsPaged() throws IOException, InterruptedException {
+        setUp();
+        Assertions.assertEquals(200, send("/accounts/9999/following/9997", "POST").statusCode());
+        Assertions.assertEquals(200, send("/accounts/9999/following/9996", "POST").statusCode());
+
+        HttpResponse<String> first = get("/accounts/9999/feed?limit=1");
+        Assertions.assertEquals(List.of("test message 3"), texts(feed(first)));
+        String cursor = first.headers().firstValue("X-Next-Cursor").orElseThrow();
+
+        HttpResponse<String> second = get("/accounts/9999/feed?limit=1&after=" + URLEncoder.encode(cursor, StandardCharsets.UTF_8));
+        Assertions.assertEquals(List.of("test message 2"), texts(feed(second)));
+        Assertions.assertTrue(second.headers().firstValue("X-Next-Cursor").isEmpty());
+    }
+
+    /**
+     * A deleted message drops out of the feeds it was pushed to.
+     */
+    @Test
+    public void deletedMessageLeavesFeed() throws IOException, InterruptedException {
+        setUp();
+        Assertions.assertEquals(200, send("/accounts/9999/following/9997", "POST").statusCode());
+        Assertions.assertEquals(200, send("/messages/9997", "DELETE").statusCode());
+        Assertions.assertEquals(List.of(), feed(get("/accounts/9999/feed")));
+    }
+
+    /**
+     * Accounts over the celebrity threshold are not pushed to their followers but
+     * still show up in their feeds.
+     */
+    @Test
+    public void celebritiesAreMergedAtReadTime() throws IOException, InterruptedException {
+        setUp("--social-media.feed.celebrity-threshold=0");
+        Assertions.assertEquals(200, send("/accounts/9999/following/9997", "POST").statusCode());
+        Assertions.assertEquals(200, postMessage(9997, "celebrity message").statusCode());
+
+        Assertions.assertEquals(List.of(), app.getBean(HomeTimelines.class).page(9999, null, 10));
+        Assertions.assertEquals(List.of("celebrity message", "test message 2"), texts(feed(get("/accounts/9999/feed"))));
+    }
+
+    /**
+     * A follow that rolls back leaves nothing in the in-memory timelines.
+     */
+    @Test
+    public void rolledBackFollowLeavesTimelineEmpty() throws InterruptedException {
+        setUp();
+        new TransactionTemplate(app.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+            Assertions.assertTrue(app.getBean(FeedService.class).follow(9999, 9997));
+            status.setRollbackOnly();
+        });
+        Assertions.assertEquals(List.of(), app.getBean(HomeTimelines.class).page(9999, null, 10));
+    }
+
+    /**
+     * An unfollow applied while the follow graph and timelines are still loading is
+     * not undone when the load reads the follow and its timeline entries.
+     */
+    @Test
+    public void unfollowDuringLoadIsReplayed() throws IOException, InterruptedException {
+        setUp();
+        Assertions.assertEquals(200, send("/accounts/9999/following/9997", "POST").statusCode());
+
+        FollowGraph followGraph = new FollowGraph(app.getBean(FollowRepository.class));
+        HomeTimelines homeTimelines = new HomeTimelines(
+            app.getBean(TimelineRepository.class), app.getBean(PlatformTransactionManager.class), 800
+        );
+        followGraph.remove(9999, 9997);
+        homeTimelines.removeAuthor(9999, 9997);
+        followGraph.load();
+        homeTimelines.load();
+
+        Assertions.assertFalse(followGraph.follows(9999, 9997));
+        Assertions.assertEquals(List.of(), homeTimelines.page(9999, null, 10));
+    }
+
+    /**
+     * A feed read is a single primary-key lookup of the page's messages.
+     */
+    @Test
+    public void feedReadIsOneStatement() throws IOException, InterruptedException {
+        setUp();
+        Assertions.assertEquals(200, send("/accounts/9999/following/9997", "POST").statusCode());
+        HttpResponse<String> response = get("/accounts/9999/feed");
+        Assertions.assertEquals(List.of("test message 2"), texts(feed(response)));
+        Assertions.assertEquals("1", response.headers().firstValue(StatementCountHeaderAdvice.STATEMENT_COUNT_HEADER).orElseThrow());
+    }
+
+    @Test
+    public void invalidRequests() throws IOException, InterruptedException {
+        setUp();
+        Assertions.assertEquals(400, send("/accounts/9999/following/9999", "POST").statusCode());
+        Assertions.assertEquals(400, send("/accounts/9999/following/1", "POST").statusCode());
+        Assertions.assertEquals(400, send("/accounts/1/following/9999", "POST").statusCode());
+        Assertions.assertEquals(400, get("/accounts/9999/feed?limit=0").statusCode());
+        Assertions.assertEquals(400, get("/accounts/9999/feed?after=not-a-cursor").statusCode());
+    }
+
+    private List<Message> feed(HttpResponse<String> response) throws IOException {
+        Assertions.assertEquals(200, response.statusCode(), response.uri().toString());
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>() {});
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getMessage_text).collect(Collectors.toList());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> send(String path, String method) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> postMessage(int posted_by, String text) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                    "{\"posted_by\":" + posted_by + ",\"message_text\":\"" + text + "\",\"time_posted_epoch\":1669947793}"))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,347 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Open-model load generator for sizing a node: requests arrive at a fixed rate
+ * regardless of how quickly the server answers, drawn from a weighted mix of the
+ * same requests the endpoint tests send. Latency is measured from the moment each
+ * request was scheduled to start, not from when it was actually sent, so time a
+ * request spends waiting behind a stalled server is counted (coordinated-omission
+ * correction). The uncorrected service time is reported alongside for comparison.
+ *
+ * Starts the app in this JVM unless load.target points at a running one. Only
+ * runs when asked for:
+ *
+ *   mvn test -Dtest=HttpLoadBenchmark -Dbenchmark=true
+ *       [-Dload.target=http://host:8080] [-Dload.app-args="--social-media.async.enabled=true"]
+ *       [-Dload.rate=500] [-Dload.warmup=10] [-Dload.duration=60] [-Dload.accounts=100]
+ *       [-Dload.mix=register=2,login=10,create=20,read=40,timeline=20,patch=5,delete=3]
+ *       [-Dload.max-in-flight=10000] [-Dload.slo.p99=100]
+ *
+ * Rates are in requests per second, times in seconds and the p99 SLO, which fails
+ * the run when any endpoint exceeds it, in milliseconds. Each endpoint's full
+ * corrected distribution is written to target/load/{endpoint}.hgrm.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class HttpLoadBenchmark {
+
+    static final String TARGET = System.getProperty("load.target", "http://localhost:8080");
+    static final double RATE = Double.parseDouble(System.getProperty("load.rate", "500"));
+    static final int WARMUP = Integer.getInteger("load.warmup", 10);
+    static final int DURATION = Integer.getInteger("load.duration", 60);
+    static final int ACCOUNTS = Integer.getInteger("load.accounts", 100);
+    static final int MAX_IN_FLIGHT = Integer.getInteger("load.max-in-flight", 10_000);
+    static final String MIX = System.getProperty("load.mix", "register=2,login=10,create=20,read=40,timeline=20,patch=5,delete=3");
+    static final String SLO_P99 = System.getProperty("load.slo.p99");
+
+    // Created message ids that reads, patches and deletes pick from; 0 marks a free or deleted slot.
+    static final int MESSAGE_POOL_SIZE = 1 << 16;
+
+    enum Endpoint { REGISTER, LOGIN, CREATE, READ, TIMELINE, PATCH, DELETE }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient webClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newFixedThreadPool(4))
+            .build();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong usernames = new AtomicLong();
+
+    private final List<JsonNode> accounts = new CopyOnWriteArrayList<>();
+    private final AtomicIntegerArray messageIds = new AtomicIntegerArray(MESSAGE_POOL_SIZE);
+    private final AtomicLong messagesCreated = new AtomicLong();
+
+    private final Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong lastCompletion = new AtomicLong();
+    private long measureStart;
+
+    @Test
+    public void generateLoad() throws Exception {
+        ApplicationContext app = System.getProperty("load.target") == null
+            ? SpringApplication.run(SocialMediaApp.class, appArgs())
+            : null;
+        try {
+            Endpoint[] mix = parseMix(MIX);
+            for (Endpoint endpoint : Endpoint.values()) {
+                stats.put(endpoint, new EndpointStats());
+            }
+
+            seed();
+            run(mix);
+            report();
+        } finally {
+            if (app != null) {
+                SpringApplication.exit(app);
+            }
+        }
+    }
+
+    /**
+     * Register the starting accounts, each with one message, one request at a time.
+     */
+    private void seed() throws Exception {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            for (Endpoint endpoint : new Endpoint[] {Endpoint.REGISTER, Endpoint.CREATE}) {
+                HttpResponse<String> response = webClient.send(request(endpoint), HttpResponse.BodyHandlers.ofString());
+                Assertions.assertEquals(200, response.statusCode(), "seeding " + endpoint);
+                onSuccess(endpoint, response);
+            }
+        }
+    }
+
+    /**
+     * Issue requests at the configured rate for the warm-up and then the measured
+     * period, and wait for the stragglers.
+     */
+    private void run(Endpoint[] mix) throws InterruptedException {
+        long start = System.nanoTime();
+        measureStart = start + TimeUnit.SECONDS.toNanos(WARMUP);
+        long end = measureStart + TimeUnit.SECONDS.toNanos(DURATION);
+        for (long i = 0; ; i++) {
+            long intendedStart = start + (long) (i * 1e9 / RATE);
+            if (intendedStart >= end) {
+                break;
+            }
+
+            long wait;
+            while ((wait = intendedStart - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            fire(mix[ThreadLocalRandom.current().nextInt(mix.length)], intendedStart, intendedStart >= measureStart);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void fire(Endpoint endpoint, long intendedStart, boolean measured) {
+        EndpointStats endpointStats = stats.get(endpoint);
+        if (inFlight.incrementAndGet() > MAX_IN_FLIGHT) {
+            inFlight.decrementAndGet();
+            if (measured) {
+                endpointStats.error("dropped");
+            }
+            return;
+        }
+
+        long sent = System.nanoTime();
+        webClient.sendAsync(request(endpoint), HttpResponse.BodyHandlers.ofString())
+            .orTimeout(60, TimeUnit.SECONDS)
+            .whenComplete((response, ex) -> {
+                long done = System.nanoTime();
+                inFlight.decrementAndGet();
+                if (ex == null && response.statusCode() / 100 == 2) {
+                    onSuccess(endpoint, response);
+                }
+
+                if (measured) {
+                    lastCompletion.accumulateAndGet(done, Math::max);
+                    endpointStats.record(done - intendedStart, done - sent);
+                    if (ex != null) {
+                        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        endpointStats.error(cause.getClass().getSimpleName());
+                    } else if (response.statusCode() / 100 != 2) {
+                        endpointStats.error(Integer.toString(response.statusCode()));
+                    }
+                }
+            });
+    }
+
+    /**
+     * Build the next request for an endpoint, in the shape the endpoint tests use.
+     */
+    private HttpRequest request(Endpoint endpoint) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        JsonNode account = accounts.isEmpty() ? null : accounts.get(random.nextInt(accounts.size()));
+        int accountId = account == null ? 9999 : account.get("account_id").asInt();
+        switch (endpoint) {
+            case REGISTER:
+                return post("/register", "{\"username\":\"load-" + runId + "-" + usernames.incrementAndGet() + "\",\"password\":\"password\"}");
+            case LOGIN:
+                return post("/login", account == null
+                    ? "{\"username\":\"testuser1\",\"password\":\"password\"}"
+                    : "{\"username\":\"" + account.get("username").asText() + "\",\"password\":\"password\"}");
+            case CREATE:
+                return post("/messages", "{\"posted_by\":" + accountId + ",\"message_text\":\"load test message\",\"time_posted_epoch\":"
+                    + System.currentTimeMillis() / 1000 + "}");
+            case READ:
+                return get("/messages/" + pickMessageId(false));
+            case TIMELINE:
+                return get("/accounts/" + accountId + "/messages");
+            case PATCH:
+                return HttpRequest.newBuilder()
+                    .uri(URI.create(TARGET + "/messages/" + pickMessageId(false)))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\":\"updated load test message\"}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            case DELETE:
+                return HttpRequest.newBuilder()
+                    .uri(URI.create(TARGET + "/messages/" + pickMessageId(true)))
+                    .DELETE()
+                    .build();
+            default:
+                throw new IllegalArgumentException(endpoint.name());
+        }
+    }
+
+    private HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder()
+            .uri(URI.create(TARGET + path))
+            .POST(HttpRequest.BodyPublishers.ofString(json))
+            .header("Content-Type", "application/json")
+            .build();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder().uri(URI.create(TARGET + path)).build();
+    }
+
+    /**
+     * Remember the accounts and messages the load creates, so later requests can use them.
+     */
+    private void onSuccess(Endpoint endpoint, HttpResponse<String> response) {
+        try {
+            if (endpoint == Endpoint.REGISTER) {
+                accounts.add(objectMapper.readTree(response.body()));
+            } else if (endpoint == Endpoint.CREATE) {
+                int messageId = objectMapper.readTree(response.body()).get("message_id").asInt();
+                messageIds.set((int) (messagesCreated.getAndIncrement() % MESSAGE_POOL_SIZE), messageId);
+            }
+        } catch (Exception ex) {
+            stats.get(endpoint).error("unreadable body");
+        }
+    }
+
+    /**
+     * Pick a random created message, taking it out of the pool if it is about to be
+     * deleted. Falls back to the seeded message 9999 (or, for deletes, an id that
+     * does not exist) when the slot is empty.
+     */
+    private int pickMessageId(boolean remove) {
+        long created = messagesCreated.get();
+        if (created == 0) {
+            return remove ? 0 : 9999;
+        }
+
+        int slot = ThreadLocalRandom.current().nextInt((int) Math.min(created, MESSAGE_POOL_SIZE));
+        int messageId = remove ? messageIds.getAndSet(slot, 0) : messageIds.get(slot);
+        return messageId != 0 ? messageId : (remove ? 0 : 9999);
+    }
+
+    private void report() throws IOException {
+        Path directory = Files.createDirectories(Path.of("target", "load"));
+        Histogram all = new Histogram(3);
+        long errors = 0;
+        System.out.printf("%.0f req/s offered for %d s against %s (latency in ms, corrected for coordinated omission)%n",
+            RATE, DURATION, TARGET);
+        System.out.printf("%-9s %8s %7s %9s %9s %9s %9s %15s  %s%n",
+            "endpoint", "count", "errors", "p50", "p99", "p99.9", "max", "p99 uncorrected", "errors by cause");
+        for (Map.Entry<Endpoint, EndpointStats> entry : stats.entrySet()) {
+            String name = entry.getKey().name().toLowerCase();
+            EndpointStats endpointStats = entry.getValue();
+            Histogram corrected = endpointStats.corrected;
+            all.add(corrected);
+            errors += endpointStats.errors.sum();
+            System.out.printf("%-9s %8d %7d %9.2f %9.2f %9.2f %9.2f %15.2f  %s%n",
+                name, corrected.getTotalCount(), endpointStats.errors.sum(),
+                millis(corrected, 50), millis(corrected, 99), millis(corrected, 99.9), corrected.getMaxValue() / 1e3,
+                millis(endpointStats.uncorrected, 99), endpointStats.errorsByCause);
+            try (PrintStream out = new PrintStream(directory.resolve(name + ".hgrm").toFile())) {
+                corrected.outputPercentileDistribution(out, 1e3);
+            }
+        }
+        System.out.printf("%-9s %8d %7d %9.2f %9.2f %9.2f %9.2f%n",
+            "all", all.getTotalCount(), errors, millis(all, 50), millis(all, 99), millis(all, 99.9), all.getMaxValue() / 1e3);
+        System.out.printf("achieved %.0f req/s%n", all.getTotalCount() / ((lastCompletion.get() - measureStart) / 1e9));
+
+        if (SLO_P99 != null) {
+            double slo = Double.parseDouble(SLO_P99);
+            for (Map.Entry<Endpoint, EndpointStats> entry : stats.entrySet()) {
+                double p99 = millis(entry.getValue().corrected, 99);
+                Assertions.assertTrue(p99 <= slo, entry.getKey() + " p99 " + p99 + " ms exceeds the " + slo + " ms SLO");
+            }
+        }
+    }
+
+    private static String[] appArgs() {
+        String args = System.getProperty("load.app-args", "").trim();
+        return args.isEmpty() ? new String[0] : args.split("\\s+");
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1e3;
+    }
+
+    /**
+     * Parse "name=weight,..." into a lookup table where each endpoint appears weight times.
+     */
+    private static Endpoint[] parseMix(String mix) {
+        Endpoint[] table = new Endpoint[0];
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            Endpoint endpoint = Endpoint.valueOf(parts[0].trim().toUpperCase());
+            int weight = Integer.parseInt(parts[1].trim());
+            int offset = table.length;
+            table = Arrays.copyOf(table, offset + weight);
+            Arrays.fill(table, offset, offset + weight, endpoint);
+        }
+        return table;
+    }
+
+    /**
+     * Latencies (in microseconds) and errors of one endpoint during the measured period.
+     */
+    static class EndpointStats {
+        final Histogram corrected = new ConcurrentHistogram(3);
+        final Histogram uncorrected = new ConcurrentHistogram(3);
+        final LongAdder errors = new LongAdder();
+        final Map<String, LongAdder> errorsByCause = new ConcurrentSkipListMap<>();
+
+        void record(long correctedNanos, long uncorrectedNanos) {
+            corrected.recordValue(TimeUnit.NANOSECONDS.toMicros(correctedNanos));
+            uncorrected.recordValue(TimeUnit.NANOSECONDS.toMicros(uncorrectedNanos));
+        }
+
+        void error(String cause) {
+            errors.increment();
+            errorsByCause.computeIfAbsent(cause, key -> new LongAdder()).increment();
+        }
+    }
+}
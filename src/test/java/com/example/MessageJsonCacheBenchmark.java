@@ -0,0 +1,141 @@
+package com.example;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.sun.management.OperatingSystemMXBean;
+
+/**
+ * Measures what the message JSON cache saves on hot reads: requests per second and
+ * requests per CPU-second (requests per core) of a read mix of single messages and
+ * full pages of an account's messages, with the cache on, as shipped, and off. The
+ * client runs in the same JVM, so its CPU is counted in both runs alike. Only runs
+ * when asked for:
+ *
+ *   mvn test -Dtest=MessageJsonCacheBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class MessageJsonCacheBenchmark {
+
+    static final int THREADS = 16;
+    static final int REQUESTS = 20_000;
+    static final int ROUNDS = 2;
+    static final int MESSAGES = 100;
+
+    @Test
+    public void compareCachedAndUncached() throws Exception {
+        // The first context in the JVM also pays for class loading and JIT of shared
+        // code, so it is discarded; the two setups then alternate and are averaged.
+        run("discarded");
+        double[] uncached = new double[2];
+        double[] cached = new double[2];
+        for (int r = 0; r < ROUNDS; r++) {
+            add(uncached, run("uncached", "--social-media.messages.json-cache.enabled=false"));
+            add(cached, run("cached"));
+        }
+        System.out.printf("cache: %+.1f%% req/s, %+.1f%% req per core%n",
+            100 * (cached[0] / uncached[0] - 1), 100 * (cached[1] / uncached[1] - 1));
+    }
+
+    private static void add(double[] total, double[] result) {
+        for (int i = 0; i < total.length; i++) {
+            total[i] += result[i] / ROUNDS;
+        }
+    }
+
+    /**
+     * @return throughput in req/s and requests per CPU-second
+     */
+    private double[] run(String name, String... args) throws Exception {
+        ApplicationContext app = SpringApplication.run(SocialMediaApp.class, args);
+        try {
+            HttpClient webClient = HttpClient.newHttpClient();
+            List<String> paths = seed(webClient);
+            OperatingSystemMXBean os = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+            // Warm up the JIT, the connection pool and the caches before measuring.
+            measure(webClient, paths, REQUESTS / 4);
+            long cpuStart = os.getProcessCpuTime();
+            long start = System.nanoTime();
+            int failures = measure(webClient, paths, REQUESTS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double cpuSeconds = (os.getProcessCpuTime() - cpuStart) / 1e9;
+
+            double[] result = {REQUESTS / seconds, REQUESTS / cpuSeconds};
+            System.out.printf("%s: %.0f req/s, %.0f req per CPU-second, %d failures%n", name, result[0], result[1], failures);
+            Assertions.assertEquals(0, failures);
+            return result;
+        } finally {
+            SpringApplication.exit(app);
+        }
+    }
+
+    /**
+     * Give account 9999 a full default page of messages.
+     *
+     * @return the paths to read: every message, and the account's page after each
+     */
+    private List<String> seed(HttpClient webClient) throws Exception {
+        StringBuilder batch = new StringBuilder("[");
+        for (int i = 0; i < MESSAGES; i++) {
+            batch.append(i == 0 ? "" : ",")
+                .append("{\"posted_by\":9999,\"message_text\":\"benchmark message ").append(i)
+                .append(" with some text to serialize\",\"time_posted_epoch\":").append(1669947800 + i).append("}");
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(batch.append("]").toString()))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+
+        List<String> paths = new ArrayList<>();
+        for (int message_id = 1; message_id <= MESSAGES; message_id++) {
+            paths.add("/messages/" + message_id);
+            paths.add("/accounts/9999/messages");
+        }
+        return paths;
+    }
+
+    private int measure(HttpClient webClient, List<String> paths, int requests) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    HttpRequest request = HttpRequest.newBuilder()
+                            .uri(URI.create("http://localhost:8080" + paths.get(i % paths.size())))
+                            .build();
+                    try {
+                        if (webClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (Exception ex) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.MINUTES);
+        return failures.get();
+    }
+}
@@ -0,0 +1,128 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.service.MessageJsonCache;
+
+@DisabledIfSystemProperty(named = "spring.profiles.active", matches = "reactive",
+    disabledReason = "cached JSON is only served by the servlet stack")
+public class MessageJsonCacheTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    MessageJsonCache messageJsonCache;
+
+    public void setUp(String... args) throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        messageJsonCache = app.getBean(MessageJsonCache.class);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * A cached message is served as the same JSON until it is updated or deleted.
+     */
+    @Test
+    public void messageJsonFollowsWrites() throws IOException, InterruptedException {
+        setUp();
+        assertMessageJsonFollowsWrites();
+    }
+
+    /**
+     * Off-heap entries are written out the same as heap ones.
+     */
+    @Test
+    public void offHeapMessageJsonFollowsWrites() throws IOException, InterruptedException {
+        setUp("--social-media.messages.json-cache.off-heap=true");
+        assertMessageJsonFollowsWrites();
+    }
+
+    /**
+     * A cached page keeps its cursor, and a new message moves the account to a new page.
+     */
+    @Test
+    public void accountPageJsonFollowsWrites() throws IOException, InterruptedException {
+        setUp();
+        Assertions.assertEquals(200, send("/messages", "POST",
+            "{\"posted_by\":9999,\"message_text\":\"second message\",\"time_posted_epoch\":1669947793}").statusCode());
+
+        HttpResponse<String> first = get("/accounts/9999/messages?limit=1");
+        HttpResponse<String> second = get("/accounts/9999/messages?limit=1");
+        Assertions.assertEquals(200, second.statusCode());
+        Assertions.assertEquals(first.body(), second.body());
+        Assertions.assertTrue(second.body().contains("second message"), second.body());
+        Assertions.assertEquals(first.headers().firstValue("X-Next-Cursor").orElseThrow(),
+            second.headers().firstValue("X-Next-Cursor").orElseThrow());
+        Assertions.assertEquals(1, messageJsonCache.getStats().hitCount());
+
+        Assertions.assertEquals(200, send("/messages", "POST",
+            "{\"posted_by\":9999,\"message_text\":\"third message\",\"time_posted_epoch\":1669947794}").statusCode());
+        HttpResponse<String> third = get("/accounts/9999/messages?limit=1");
+        Assertions.assertTrue(third.body().contains("third message"), third.body());
+        Assertions.assertEquals(400, get("/accounts/9999/messages?limit=0").statusCode());
+    }
+
+    /**
+     * With the cache off the responses are the same, and nothing is cached.
+     */
+    @Test
+    public void disabledCacheServesSameJson() throws IOException, InterruptedException {
+        setUp("--social-media.messages.json-cache.enabled=false");
+        HttpResponse<String> response = get("/messages/9999");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(
+            "{\"message_id\":9999,\"posted_by\":9999,\"message_text\":\"test message 1\",\"time_posted_epoch\":1669947792}",
+            response.body());
+        Assertions.assertEquals(200, get("/accounts/9999/messages").statusCode());
+        Assertions.assertEquals(0, messageJsonCache.getSize());
+    }
+
+    private void assertMessageJsonFollowsWrites() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("/messages/9999");
+        HttpResponse<String> second = get("/messages/9999");
+        Assertions.assertEquals(200, second.statusCode());
+        Assertions.assertEquals(first.body(), second.body());
+        Assertions.assertEquals("application/json", second.headers().firstValue("Content-Type").orElseThrow());
+        Assertions.assertEquals(Integer.toString(second.body().length()), second.headers().firstValue("Content-Length").orElseThrow());
+        Assertions.assertEquals(1, messageJsonCache.getStats().hitCount());
+        Assertions.assertTrue(messageJsonCache.getMemoryBytes() >= second.body().length());
+
+        Assertions.assertEquals(200, send("/messages/9999", "PATCH", "{\"message_text\":\"updated message\"}").statusCode());
+        Assertions.assertTrue(get("/messages/9999").body().contains("updated message"));
+
+        Assertions.assertEquals(200, send("/messages/9999", "DELETE", null).statusCode());
+        HttpResponse<String> deleted = get("/messages/9999");
+        Assertions.assertEquals(200, deleted.statusCode());
+        Assertions.assertEquals("", deleted.body());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> send(String path, String method, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
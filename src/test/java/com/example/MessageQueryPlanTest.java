@@ -0,0 +1,137 @@
+package com.example;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.repository.MessageRepository;
+
+/**
+ * Checks the H2 query plans of the SQL that Hibernate generates for the message
+ * listing queries, captured with a StatementInspector as the repository runs them,
+ * and explained with the same parameter values.
+ */
+public class MessageQueryPlanTest {
+    ApplicationContext app;
+    JdbcTemplate jdbcTemplate;
+    MessageRepository messageRepository;
+    List<String> statements = new CopyOnWriteArrayList<>();
+
+    /**
+     * Before every test, reset the database, start capturing the SQL Hibernate runs and
+     * retrieve a JdbcTemplate to inspect H2 query plans with.
+     */
+    @BeforeEach
+    public void setUp() {
+        SpringApplication application = new SpringApplication(SocialMediaApp.class);
+        application.addInitializers(context -> context.getBeanFactory().registerSingleton("statementCapture",
+            (HibernatePropertiesCustomizer) properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                (StatementInspector) sql -> {
+                    statements.add(sql);
+                    return sql;
+                })
+        ));
+        app = application.run();
+        jdbcTemplate = app.getBean(JdbcTemplate.class);
+        messageRepository = app.getBean(MessageRepository.class);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * The per-account timeline query should be answered by message_posted_by_time_idx, in index
+     * order, without a table scan or a separate sort.
+     */
+    @Test
+    public void messagesByAccountUseIndex() {
+        String sql = generatedSql(() -> messageRepository.findFirstPageByPostedBy(9999, PageRequest.of(0, 10)));
+        String plan = explain(sql, 9999, 10);
+        Assertions.assertTrue(plan.contains("MESSAGE_POSTED_BY_TIME_IDX"), "Expected index lookup, plan was: " + plan);
+        Assertions.assertTrue(plan.contains("index sorted"), "Expected sort served by the index, plan was: " + plan);
+        Assertions.assertFalse(plan.contains("tableScan"), "Expected no table scan, plan was: " + plan);
+    }
+
+    /**
+     * The keyset continuation of the per-account timeline should also stay on the index.
+     */
+    @Test
+    public void messagesByAccountAfterCursorUseIndex() {
+        String sql = generatedSql(() -> messageRepository.findPageByPostedByAfter(9999, 1669947792L, 9999, PageRequest.of(0, 10)));
+        String plan = explain(sql, 9999, 1669947792L, 1669947792L, 9999, 10);
+        Assertions.assertTrue(plan.contains("MESSAGE_POSTED_BY_TIME_IDX"), "Expected index lookup, plan was: " + plan);
+        Assertions.assertTrue(plan.contains("index sorted"), "Expected sort served by the index, plan was: " + plan);
+        Assertions.assertFalse(plan.contains("tableScan"), "Expected no table scan, plan was: " + plan);
+    }
+
+    /**
+     * A time-range page over all messages should be answered by message_time_idx in index order.
+     */
+    @Test
+    public void messagesInTimeRangeUseIndex() {
+        String sql = generatedSql(() -> messageRepository.findFirstPageInRange(1669900000L, 1669986400L, PageRequest.of(0, 10)));
+        String plan = explain(sql, 1669900000L, 1669986400L, 10);
+        Assertions.assertTrue(plan.contains("MESSAGE_TIME_IDX"), "Expected index lookup, plan was: " + plan);
+        Assertions.assertTrue(plan.contains("index sorted"), "Expected sort served by the index, plan was: " + plan);
+        Assertions.assertFalse(plan.contains("tableScan"), "Expected no table scan, plan was: " + plan);
+    }
+
+    /**
+     * The continuation of a time-range page should start its index scan at the cursor's time,
+     * the third parameter.
+     */
+    @Test
+    public void messagesInTimeRangeAfterCursorUseIndex() {
+        String sql = generatedSql(() -> messageRepository.findPageInRangeAfter(
+            1669900000L, 1669986400L, 1669947792L, 9996, PageRequest.of(0, 10)
+        ));
+        String plan = explain(sql, 1669900000L, 1669986400L, 1669947792L, 1669947792L, 1669947792L, 9996, 10);
+        Assertions.assertTrue(plan.contains("MESSAGE_TIME_IDX: TIME_POSTED_EPOCH <= ?3"),
+            "Expected the cursor's time in the index condition, plan was: " + plan);
+        Assertions.assertTrue(plan.contains("index sorted"), "Expected sort served by the index, plan was: " + plan);
+    }
+
+    /**
+     * A time-range page of one account's messages should stay on message_posted_by_time_idx.
+     */
+    @Test
+    public void messagesByAccountInTimeRangeUseIndex() {
+        String sql = generatedSql(() -> messageRepository.findFirstPageByPostedByInRange(
+            9999, 1669900000L, 1669986400L, PageRequest.of(0, 10)
+        ));
+        String plan = explain(sql, 9999, 1669900000L, 1669986400L, 10);
+        Assertions.assertTrue(plan.contains("MESSAGE_POSTED_BY_TIME_IDX"), "Expected index lookup, plan was: " + plan);
+        Assertions.assertTrue(plan.contains("index sorted"), "Expected sort served by the index, plan was: " + plan);
+        Assertions.assertFalse(plan.contains("tableScan"), "Expected no table scan, plan was: " + plan);
+    }
+
+    /**
+     * Run a repository query and return the SQL Hibernate generated for it.
+     */
+    private String generatedSql(Runnable query) {
+        statements.clear();
+        query.run();
+        Assertions.assertEquals(1, statements.size(), statements.toString());
+        return statements.get(0);
+    }
+
+    /**
+     * @param args the statement's parameters, in the order of its placeholders
+     */
+    private String explain(String sql, Object... args) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, args);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+public class MetricsEndpointTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/actuator/prometheus after a request to GET /messages/9999
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: Prometheus text format with the endpoint timer tagged by mapping and status, and the
+     *  Hibernate, connection pool, JVM and message cache meters
+     */
+    @Test
+    public void prometheusScrape() throws IOException, InterruptedException {
+        HttpRequest getRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .build();
+        Assertions.assertEquals(200, webClient.send(getRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest scrapeRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/actuator/prometheus"))
+                .build();
+        HttpResponse<String> response = webClient.send(scrapeRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+
+        String body = response.body();
+        Assertions.assertTrue(body.lines().anyMatch(line -> line.startsWith("http_server_requests_seconds_count{")
+            && line.contains("uri=\"/messages/{message_id}\"") && line.contains("status=\"200\"")), body);
+        for (String meter : new String[] {
+            "http_server_requests_seconds_bucket{",
+            "hibernate_query_executions_total{",
+            "hibernate_entities_loads_total{",
+            "hibernate_flushes_total{",
+            "hibernate_second_level_cache_requests_total{",
+            "hikaricp_connections_active{",
+            "hikaricp_connections_pending{",
+            "hikaricp_connections_acquire_seconds_count{",
+            "jvm_memory_used_bytes{",
+            "jvm_gc_memory_allocated_bytes_total{",
+            "cache_gets_total{",
+            "social_media_username_filter_false_positive_rate{",
+            "social_media_jdbc_executor_active{",
+        }) {
+            Assertions.assertTrue(body.contains(meter), meter);
+        }
+    }
+}
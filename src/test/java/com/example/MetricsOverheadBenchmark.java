@@ -0,0 +1,131 @@
+package com.example;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Measures what the Micrometer instrumentation costs: throughput and latency of a
+ * read-heavy mix (GET /messages/9999 and GET /accounts/9999/messages) with the
+ * metrics on, as shipped, and with the request, Hibernate and connection pool
+ * meters switched off. Also reports how long a Prometheus scrape takes. Hibernate
+ * statistics stay on in both runs, since the statement-count tests rely on them.
+ * Only runs when asked for:
+ *
+ *   mvn test -Dtest=MetricsOverheadBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class MetricsOverheadBenchmark {
+
+    static final int THREADS = 16;
+    static final int REQUESTS = 20_000;
+    static final int ROUNDS = 2;
+    static final int SCRAPES = 100;
+
+    static final String UNINSTRUMENTED_EXCLUSIONS = String.join(",",
+        "org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration",
+        "org.springframework.boot.actuate.autoconfigure.metrics.web.servlet.WebMvcMetricsAutoConfiguration",
+        "org.springframework.boot.actuate.autoconfigure.metrics.orm.jpa.HibernateMetricsAutoConfiguration",
+        "org.springframework.boot.actuate.autoconfigure.metrics.jdbc.DataSourcePoolMetricsAutoConfiguration"
+    );
+
+    @Test
+    public void compareInstrumentedAndUninstrumented() throws Exception {
+        // The first context in the JVM also pays for class loading and JIT of shared
+        // code, so it is discarded; the two setups then alternate and are averaged.
+        run("discarded");
+        double[] uninstrumented = new double[3];
+        double[] instrumented = new double[3];
+        for (int r = 0; r < ROUNDS; r++) {
+            add(uninstrumented, run("uninstrumented",
+                "--spring.autoconfigure.exclude=" + UNINSTRUMENTED_EXCLUSIONS, "--management.metrics.enable.all=false"));
+            add(instrumented, run("instrumented"));
+        }
+        System.out.printf("overhead: %.1f%% throughput, %+.3f ms p50, %+.3f ms p99%n",
+            100 * (1 - instrumented[0] / uninstrumented[0]),
+            instrumented[1] - uninstrumented[1], instrumented[2] - uninstrumented[2]);
+    }
+
+    private static void add(double[] total, double[] result) {
+        for (int i = 0; i < total.length; i++) {
+            total[i] += result[i] / ROUNDS;
+        }
+    }
+
+    /**
+     * @return throughput in req/s, p50 and p99 in ms
+     */
+    private double[] run(String name, String... args) throws Exception {
+        ApplicationContext app = SpringApplication.run(SocialMediaApp.class, args);
+        try {
+            HttpClient webClient = HttpClient.newHttpClient();
+            // Warm up the JIT and connection pool before measuring.
+            measure(webClient, new long[REQUESTS / 4]);
+            long[] latencies = new long[REQUESTS];
+            long start = System.nanoTime();
+            int failures = measure(webClient, latencies);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            double[] result = {REQUESTS / seconds, latencies[REQUESTS / 2] / 1e6, latencies[(int) (REQUESTS * 0.99)] / 1e6};
+            System.out.printf("%s: %.0f req/s, p50 %.3f ms, p99 %.3f ms, %d failures%n",
+                name, result[0], result[1], result[2], failures);
+            Assertions.assertEquals(0, failures);
+
+            HttpRequest scrapeRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/actuator/prometheus"))
+                    .build();
+            long scrapeStart = System.nanoTime();
+            int bytes = 0;
+            for (int i = 0; i < SCRAPES; i++) {
+                bytes = webClient.send(scrapeRequest, HttpResponse.BodyHandlers.ofString()).body().length();
+            }
+            System.out.printf("%s: scrape %.2f ms, %d bytes%n", name, (System.nanoTime() - scrapeStart) / 1e6 / SCRAPES, bytes);
+            return result;
+        } finally {
+            SpringApplication.exit(app);
+        }
+    }
+
+    private int measure(HttpClient webClient, long[] latencies) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < latencies.length) {
+                    String path = i % 2 == 0 ? "/messages/9999" : "/accounts/9999/messages";
+                    HttpRequest request = HttpRequest.newBuilder()
+                            .uri(URI.create("http://localhost:8080" + path))
+                            .build();
+                    long start = System.nanoTime();
+                    try {
+                        if (webClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (Exception ex) {
+                        failures.incrementAndGet();
+                    }
+                    latencies[i] = System.nanoTime() - start;
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.MINUTES);
+        return failures.get();
+    }
+}
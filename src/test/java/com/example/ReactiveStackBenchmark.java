@@ -0,0 +1,118 @@
+package com.example;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Side-by-side throughput and memory of the servlet (Tomcat/JPA) and reactive
+ * (Netty/R2DBC) stacks with many concurrent connections, each issuing
+ * GET /accounts/9999/messages. Client and server share the JVM, so the memory and
+ * thread figures include the client, which is identical for both runs. Only runs
+ * when asked for:
+ *
+ *   mvn test -Dtest=ReactiveStackBenchmark -Dbenchmark=true [-Dconnections=10000] [-Drounds=5]
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ReactiveStackBenchmark {
+
+    static final int CONNECTIONS = Integer.getInteger("connections", 10_000);
+    static final int ROUNDS = Integer.getInteger("rounds", 5);
+
+    @Test
+    public void compareServletAndReactiveStacks() throws InterruptedException {
+        run("servlet", "--spring.profiles.active=servlet");
+        run("reactive", "--spring.profiles.active=reactive");
+    }
+
+    private void run(String name, String... args) throws InterruptedException {
+        ApplicationContext app = SpringApplication.run(SocialMediaApp.class, args);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            HttpClient webClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(60))
+                    .executor(Executors.newFixedThreadPool(8))
+                    .build();
+            // Warm up the JIT and open the connections before measuring.
+            round(webClient, CONNECTIONS, new long[CONNECTIONS], 0);
+
+            System.gc();
+            long baselineHeap = memory.getHeapMemoryUsage().getUsed();
+            threads.resetPeakThreadCount();
+            AtomicLong peakHeap = new AtomicLong();
+            sampler.scheduleAtFixedRate(
+                () -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 10, TimeUnit.MILLISECONDS);
+
+            long[] latencies = new long[CONNECTIONS * ROUNDS];
+            int failures = 0;
+            long start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++) {
+                failures += round(webClient, CONNECTIONS, latencies, r * CONNECTIONS);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            System.out.printf(
+                "%s: %d connections, %.0f req/s, p50 %.1f ms, p99 %.1f ms, %d failures, "
+                    + "peak threads %d, baseline heap %d MB, peak heap %d MB%n",
+                name, CONNECTIONS, latencies.length / seconds,
+                latencies[latencies.length / 2] / 1e6, latencies[(int) (latencies.length * 0.99)] / 1e6, failures,
+                threads.getPeakThreadCount(), baselineHeap >> 20, peakHeap.get() >> 20);
+        } finally {
+            sampler.shutdownNow();
+            SpringApplication.exit(app);
+        }
+    }
+
+    /**
+     * Issue one request per connection, all at once, and wait for every response.
+     *
+     * @return the number of failed requests
+     */
+    private int round(HttpClient webClient, int connections, long[] latencies, int offset) {
+        AtomicInteger failures = new AtomicInteger();
+        List<CompletableFuture<?>> responses = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            int index = offset + i;
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/accounts/9999/messages"))
+                    .timeout(Duration.ofSeconds(120))
+                    .build();
+            long start = System.nanoTime();
+            responses.add(webClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, ex) -> {
+                    latencies[index] = System.nanoTime() - start;
+                    if (ex != null || response.statusCode() != 200) {
+                        failures.incrementAndGet();
+                    }
+                    return null;
+                }));
+        }
+
+        CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0])).join();
+        return failures.get();
+    }
+}
@@ -5,7 +5,9 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 
 import org.junit.jupiter.api.AfterEach;
@@ -83,4 +85,99 @@ public class RetrieveAllMessagesForUserTest {
         List<Message> actualResult = objectMapper.readValue(response.body().toString(), new TypeReference<List<Message>>(){});
         Assertions.assertTrue(actualResult.isEmpty(), "Expected Empty Result, but Result was not Empty");
     }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/9999/messages?since=1669947800&until=1669948000&limit=1,
+     * then following the returned cursor
+     * 
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the account's messages posted in [since, until), newest first, one per page
+     */
+    @Test
+    public void getAllMessagesFromUserInTimeRange() throws IOException, InterruptedException {
+        Message first = postMessage(9999, "first in range", 1669947800L);
+        Message second = postMessage(9999, "second in range", 1669947900L);
+        postMessage(9998, "other account in range", 1669947850L);
+        postMessage(9999, "after range", 1669948000L);
+
+        HttpResponse<String> firstResponse = get("/accounts/9999/messages?since=1669947800&until=1669948000&limit=1");
+        Assertions.assertEquals(200, firstResponse.statusCode());
+        Assertions.assertEquals(List.of(second), objectMapper.readValue(firstResponse.body(), new TypeReference<List<Message>>(){}));
+        String cursor = firstResponse.headers().firstValue("X-Next-Cursor").orElse(null);
+        Assertions.assertNotNull(cursor, "Expected a next cursor on a full page");
+
+        HttpResponse<String> secondResponse = get("/accounts/9999/messages?since=1669947800&until=1669948000&limit=1&after=" + cursor);
+        Assertions.assertEquals(200, secondResponse.statusCode());
+        Assertions.assertEquals(List.of(first), objectMapper.readValue(secondResponse.body(), new TypeReference<List<Message>>(){}));
+        Assertions.assertTrue(secondResponse.headers().firstValue("X-Next-Cursor").isEmpty(), "Expected no cursor on the last page");
+
+        HttpResponse<String> sinceResponse = get("/accounts/9999/messages?since=1669947900");
+        Assertions.assertEquals(200, sinceResponse.statusCode());
+        Assertions.assertEquals(2, objectMapper.readValue(sinceResponse.body(), new TypeReference<List<Message>>(){}).size());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/9999/messages?limit=2 when the
+     * account has messages without a time_posted_epoch, then with a cursor that has no time
+     * 
+     * Expected Response:
+     *  Status Code: 200 with the timed message first and no next cursor, since the page ends
+     *  on a message without a time; then Status Code: 400 for the cursor without a time
+     */
+    @Test
+    public void getAllMessagesFromUserStopsAtMessagesWithoutTime() throws IOException, InterruptedException {
+        Message untimed = postMessage(9999, "no time", null);
+        postMessage(9999, "no time either", null);
+
+        HttpResponse<String> response = get("/accounts/9999/messages?limit=2");
+        Assertions.assertEquals(200, response.statusCode());
+        List<Message> page = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(List.of(new Message(9999, 9999, "test message 1", 1669947792L), untimed), page);
+        Assertions.assertTrue(response.headers().firstValue("X-Next-Cursor").isEmpty(), "Expected no cursor after a message without a time");
+
+        String cursor = Base64.getUrlEncoder().withoutPadding().encodeToString((":" + untimed.getMessage_id()).getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(400, get("/accounts/9999/messages?limit=2&after=" + cursor).statusCode());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/9999/messages with Accept: application/x-ndjson
+     * 
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one JSON message per line
+     */
+    @Test
+    public void streamAllMessagesFromUserNdjson() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/9999/messages"))
+                .header("Accept", "application/x-ndjson")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        Assertions.assertEquals("application/x-ndjson", response.headers().firstValue("Content-Type").orElse(null));
+        Message expectedResult = new Message(9999, 9999, "test message 1", 1669947792L);
+        Message actualResult = objectMapper.readValue(response.body().trim(), Message.class);
+        Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private Message postMessage(int postedBy, String text, Long timePostedEpoch) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":" + postedBy + ",\"message_text\": \"" + text
+                    + "\",\"time_posted_epoch\": " + timePostedEpoch + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
 }
@@ -59,4 +59,141 @@ public class RetrieveAllMessagesTest {
         List<Message> actualResult = objectMapper.readValue(response.body().toString(), new TypeReference<List<Message>>(){});
         Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
     }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?limit=2, then following the returned cursor
+     * 
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the first two messages with a cursor, then the last message without one
+     */
+    @Test
+    public void getAllMessagesPaginated() throws IOException, InterruptedException {
+        HttpRequest firstRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=2"))
+                .build();
+        HttpResponse<String> firstResponse = webClient.send(firstRequest, HttpResponse.BodyHandlers.ofString());
+        int firstStatus = firstResponse.statusCode();
+        Assertions.assertEquals(200, firstStatus, "Expected Status Code 200 - Actual Code was: " + firstStatus);
+        List<Message> firstExpected = new ArrayList<Message>();
+        firstExpected.add(new Message(9996, 9996, "test message 3", 1669947792L));
+        firstExpected.add(new Message(9997, 9997, "test message 2", 1669947792L));
+        List<Message> firstActual = objectMapper.readValue(firstResponse.body().toString(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(firstExpected, firstActual, "Expected="+firstExpected + ", Actual="+firstActual);
+        String cursor = firstResponse.headers().firstValue("X-Next-Cursor").orElse(null);
+        Assertions.assertNotNull(cursor, "Expected a next cursor on a full page");
+
+        HttpRequest secondRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=2&after=" + cursor))
+                .build();
+        HttpResponse<String> secondResponse = webClient.send(secondRequest, HttpResponse.BodyHandlers.ofString());
+        int secondStatus = secondResponse.statusCode();
+        Assertions.assertEquals(200, secondStatus, "Expected Status Code 200 - Actual Code was: " + secondStatus);
+        List<Message> secondExpected = new ArrayList<Message>();
+        secondExpected.add(new Message(9999, 9999, "test message 1", 1669947792L));
+        List<Message> secondActual = objectMapper.readValue(secondResponse.body().toString(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(secondExpected, secondActual, "Expected="+secondExpected + ", Actual="+secondActual);
+        Assertions.assertTrue(secondResponse.headers().firstValue("X-Next-Cursor").isEmpty(), "Expected no cursor on the last page");
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with a malformed cursor
+     * 
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getAllMessagesInvalidCursor() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?after=notacursor"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(400, status, "Expected Status Code 400 - Actual Code was: " + status);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?since=1669947800&until=1669948000&limit=1,
+     * then following the returned cursor
+     * 
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the messages posted in [since, until), newest first, one per page
+     */
+    @Test
+    public void getAllMessagesInTimeRange() throws IOException, InterruptedException {
+        Message first = postMessage("first in range", 1669947800L);
+        Message second = postMessage("second in range", 1669947900L);
+        postMessage("after range", 1669948000L);
+
+        HttpResponse<String> firstResponse = get("/messages?since=1669947800&until=1669948000&limit=1");
+        Assertions.assertEquals(200, firstResponse.statusCode());
+        Assertions.assertEquals(List.of(second), objectMapper.readValue(firstResponse.body(), new TypeReference<List<Message>>(){}));
+        String cursor = firstResponse.headers().firstValue("X-Next-Cursor").orElse(null);
+        Assertions.assertNotNull(cursor, "Expected a next cursor on a full page");
+
+        HttpResponse<String> secondResponse = get("/messages?since=1669947800&until=1669948000&limit=1&after=" + cursor);
+        Assertions.assertEquals(200, secondResponse.statusCode());
+        Assertions.assertEquals(List.of(first), objectMapper.readValue(secondResponse.body(), new TypeReference<List<Message>>(){}));
+        Assertions.assertTrue(secondResponse.headers().firstValue("X-Next-Cursor").isEmpty(), "Expected no cursor on the last page");
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with since after until
+     * 
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getAllMessagesInvalidTimeRange() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/messages?since=1669948000&until=1669947800");
+        int status = response.statusCode();
+        Assertions.assertEquals(400, status, "Expected Status Code 400 - Actual Code was: " + status);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with Accept: application/x-ndjson
+     * 
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one JSON message per line
+     */
+    @Test
+    public void streamAllMessagesNdjson() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("Accept", "application/x-ndjson")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        List<Message> expectedResult = new ArrayList<Message>();
+        expectedResult.add(new Message(9996, 9996, "test message 3", 1669947792L));
+        expectedResult.add(new Message(9997, 9997, "test message 2", 1669947792L));
+        expectedResult.add(new Message(9999, 9999, "test message 1", 1669947792L));
+        List<Message> actualResult = new ArrayList<Message>();
+        for (String line : response.body().split("\n")) {
+            actualResult.add(objectMapper.readValue(line, Message.class));
+        }
+        Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private Message postMessage(String text, long timePostedEpoch) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                    "{\"posted_by\":9999,\"message_text\": \"" + text + "\",\"time_posted_epoch\": " + timePostedEpoch + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
 }
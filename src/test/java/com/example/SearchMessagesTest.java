@@ -0,0 +1,178 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+import com.example.service.MessageSearchIndex;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@DisabledIfSystemProperty(named = "spring.profiles.active", matches = "reactive",
+    disabledReason = "search is only served by the servlet stack")
+public class SearchMessagesTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search?q=test message
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the seeded messages, which score equally and so come in message_id order
+     */
+    @Test
+    public void searchSeededMessages() throws IOException, InterruptedException {
+        Assertions.assertEquals(List.of(9996, 9997, 9999), ids(search("test message", null, null)));
+        Assertions.assertEquals(List.of(9997), ids(search("2", null, null)));
+        Assertions.assertEquals(List.of(), ids(search("absent", null, null)));
+    }
+
+    /**
+     * A short message that repeats the term ranks above a long one that mentions it once.
+     */
+    @Test
+    public void searchRanksByRelevance() throws IOException, InterruptedException {
+        Integer longer = create("apple banana cherry durian elderberry fig").getMessage_id();
+        Integer shorter = create("apple apple").getMessage_id();
+        Assertions.assertEquals(List.of(shorter, longer), ids(search("apple", null, null)));
+        Assertions.assertEquals(List.of(longer), ids(search("cherry APPLE", null, null)));
+    }
+
+    /**
+     * Paging through results one at a time follows the ranking and ends without a cursor.
+     */
+    @Test
+    public void searchKeysetPaging() throws IOException, InterruptedException {
+        HttpResponse<String> first = search("test message", 1, null);
+        String cursor = first.headers().firstValue("X-Next-Cursor").orElseThrow();
+        HttpResponse<String> second = search("test message", 1, cursor);
+        cursor = second.headers().firstValue("X-Next-Cursor").orElseThrow();
+        HttpResponse<String> third = search("test message", 1, cursor);
+
+        Assertions.assertEquals(List.of(9996), ids(first));
+        Assertions.assertEquals(List.of(9997), ids(second));
+        Assertions.assertEquals(List.of(9999), ids(third));
+        Assertions.assertTrue(third.headers().firstValue("X-Next-Cursor").isEmpty());
+    }
+
+    /**
+     * Updates and deletes are reflected in the next search.
+     */
+    @Test
+    public void searchFollowsUpdatesAndDeletes() throws IOException, InterruptedException {
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"rewritten post\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9997"))
+                .DELETE()
+                .build();
+        Assertions.assertEquals(200, webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> response = search("rewritten", null, null);
+        List<Message> messages = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(List.of(new Message(9999, 9999, "rewritten post", 1669947792L)), messages);
+        Assertions.assertEquals(List.of(9996), ids(search("test message", null, null)));
+    }
+
+    /**
+     * Updating and deleting messages while a search index is still being loaded.
+     *
+     * Expected Result:
+     *  Once loaded, the index has the new text and not the deleted message, rather
+     *  than the rows the load read from the table
+     */
+    @Test
+    public void changesDuringLoadAreReplayed() throws IOException {
+        MessageSearchIndex index = new MessageSearchIndex(app.getBean(MessageRepository.class), app.getBean(EntityManager.class));
+        try {
+            index.updateText(9997, "replayed text");
+            index.remove(9996);
+            new TransactionTemplate(app.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> index.load());
+
+            Assertions.assertEquals(List.of(9997), index.search("replayed", 10, null).stream()
+                .map(hit -> hit.getMessage().getMessage_id()).collect(Collectors.toList()));
+            Assertions.assertEquals(List.of(9999), index.search("test message", 10, null).stream()
+                .map(hit -> hit.getMessage().getMessage_id()).collect(Collectors.toList()));
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search with a blank query or a malformed cursor
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void searchInvalidRequest() throws IOException, InterruptedException {
+        Assertions.assertEquals(400, search(" ", null, null).statusCode());
+        Assertions.assertEquals(400, search("test", null, "not-a-cursor").statusCode());
+    }
+
+    private Message create(String text) throws IOException, InterruptedException {
+        String json = "{\"posted_by\":9999,\"message_text\": \"" + text + "\",\"time_posted_epoch\": 1669947792}";
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
+
+    private HttpResponse<String> search(String q, Integer limit, String after) throws IOException, InterruptedException {
+        String uri = "http://localhost:8080/messages/search?q=" + URLEncoder.encode(q, StandardCharsets.UTF_8)
+            + (limit == null ? "" : "&limit=" + limit)
+            + (after == null ? "" : "&after=" + after);
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create(uri)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<Integer> ids(HttpResponse<String> response) throws IOException {
+        Assertions.assertEquals(200, response.statusCode(), response.body());
+        List<Message> messages = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        return messages.stream().map(Message::getMessage_id).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,157 @@
+package com.example;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.entity.Account;
+import com.example.service.AccountIdIndex;
+import com.example.service.AccountService;
+import com.example.service.AccountUsernameCache;
+import com.example.service.UsernameBloomFilter;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Hit rates of the username and account caches under a login-heavy mix: 95%
+ * logins, with the account drawn as accounts * u^3 for uniform u so a few accounts
+ * log in often, and 5% registrations. Reports operations per second, the hit rates
+ * and how many logins reached the database, then the heap each cached account takes once
+ * every account has logged in. Goes through AccountService without HTTP. Only
+ * runs when asked for:
+ *
+ *   mvn test -Dtest=SecondLevelCacheBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class SecondLevelCacheBenchmark {
+
+    static final int ACCOUNTS = 100_000;
+    static final int FIRST_ID = 10_000;
+    static final int SEED_BATCH_SIZE = 10_000;
+    static final int THREADS = 8;
+    static final int OPERATIONS = 200_000;
+    static final double REGISTRATIONS = 0.05;
+    static final double SKEW = 3;
+
+    @Test
+    public void loginHeavyMix() throws Exception {
+        SpringApplication application = new SpringApplication(SocialMediaApp.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        ConfigurableApplicationContext app = application.run("--logging.level.root=WARN", "--spring.main.banner-mode=off");
+        try {
+            seed(app.getBean(JdbcTemplate.class), app.getBean(AccountIdIndex.class), app.getBean(UsernameBloomFilter.class));
+            AccountService accountService = app.getBean(AccountService.class);
+            AccountUsernameCache usernameCache = app.getBean(AccountUsernameCache.class);
+            Statistics statistics = app.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+            // Warm up the JIT, then measure from a cold account region; the username
+            // cache keeps its warm-up entries, so its hit rate is read as a delta.
+            run(accountService, OPERATIONS / 4);
+            app.getBean(EntityManagerFactory.class).getCache().evictAll();
+            statistics.clear();
+            CacheStats usernamesBefore = usernameCache.getStats();
+
+            long start = System.nanoTime();
+            int failures = run(accountService, OPERATIONS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Assertions.assertEquals(0, failures);
+
+            CacheStats usernames = usernameCache.getStats().minus(usernamesBefore);
+            CacheRegionStatistics accounts = statistics.getDomainDataRegionStatistics("account");
+            long accountMisses = accounts.getMissCount();
+            System.out.printf("mix: %.0f ops/s, username cache hit rate %.1f%%, account cache hit rate %.1f%%, %d of %d logins ran a query%n",
+                OPERATIONS / seconds, 100 * usernames.hitRate(), rate(accounts),
+                usernames.missCount() + accountMisses, usernames.requestCount());
+
+            // The second half of the accounts never logged in, so none of them is cached yet.
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            System.gc();
+            long before = memory.getHeapMemoryUsage().getUsed();
+            for (int i = ACCOUNTS; i < 2 * ACCOUNTS; i++) {
+                accountService.authenticate(new Account(username(FIRST_ID + i), "password"));
+            }
+            System.gc();
+            long after = memory.getHeapMemoryUsage().getUsed();
+            System.out.printf("heap: %d bytes per cached account (entity and username)%n", (after - before) / ACCOUNTS);
+        } finally {
+            SpringApplication.exit(app);
+        }
+    }
+
+    private static double rate(CacheRegionStatistics region) {
+        long requests = region.getHitCount() + region.getMissCount();
+        return requests == 0 ? 0 : 100.0 * region.getHitCount() / requests;
+    }
+
+    private int run(AccountService accountService, int operations) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger registered = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.execute(() -> {
+                while (next.getAndIncrement() < operations) {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    try {
+                        if (random.nextDouble() < REGISTRATIONS) {
+                            accountService.createAccount(new Account("registered" + System.nanoTime() + "-" + registered.incrementAndGet(), "password"));
+                        } else {
+                            int accountId = FIRST_ID + (int) (ACCOUNTS * Math.pow(random.nextDouble(), SKEW));
+                            if (accountService.authenticate(new Account(username(accountId), "password")).isEmpty()) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception ex) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.MINUTES);
+        return failures.get();
+    }
+
+    /**
+     * Insert twice as many accounts as the mix logs in to, with JDBC batches, and
+     * register them with the in-memory indexes, which loaded before seeding.
+     */
+    private void seed(JdbcTemplate jdbcTemplate, AccountIdIndex accountIdIndex, UsernameBloomFilter usernameFilter) {
+        List<Object[]> rows = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < 2 * ACCOUNTS; i++) {
+            int accountId = FIRST_ID + i;
+            rows.add(new Object[] {accountId, username(accountId), "password"});
+            accountIdIndex.add(accountId);
+            usernameFilter.put(username(accountId));
+            if (rows.size() == SEED_BATCH_SIZE || i == 2 * ACCOUNTS - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO account (account_id, username, password) VALUES (?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+
+        jdbcTemplate.execute("ALTER TABLE account ALTER COLUMN account_id RESTART WITH " + (FIRST_ID + 2 * ACCOUNTS));
+    }
+
+    private static String username(int accountId) {
+        return "user" + accountId;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.controller.StatementCountHeaderAdvice;
+
+@DisabledIfSystemProperty(named = "spring.profiles.active", matches = "reactive",
+    disabledReason = "the reactive stack reads accounts through R2DBC, without Hibernate")
+public class SecondLevelCacheTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    Statistics statistics;
+
+    public void setUp(String... args) throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        statistics = app.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Application contexts in one JVM each get cache regions of their own. The extra
+     * contexts run without a web server, so they share the thread context class loader
+     * and, before each context had its own CacheManager, the JVM-wide default one.
+     */
+    @Test
+    public void contextsHaveTheirOwnRegions() throws IOException, InterruptedException {
+        setUp();
+        ConfigurableApplicationContext first = SpringApplication.run(SocialMediaApp.class,
+            "--spring.main.web-application-type=none", "--spring.datasource.url=jdbc:h2:mem:first");
+        try {
+            SpringApplication.exit(SpringApplication.run(SocialMediaApp.class,
+                "--spring.main.web-application-type=none", "--spring.datasource.url=jdbc:h2:mem:second"));
+        } finally {
+            SpringApplication.exit(first);
+        }
+
+        Assertions.assertEquals("1", statements(login("testuser1", "password", 200)));
+        Assertions.assertEquals("0", statements(login("testuser1", "password", 200)));
+    }
+
+    /**
+     * A repeated login is answered from the username and account caches without a
+     * statement, and a new account leaves the cached logins alone.
+     */
+    @Test
+    public void repeatedLoginIsCached() throws IOException, InterruptedException {
+        setUp();
+        Assertions.assertEquals("1", statements(login("testuser1", "password", 200)));
+        Assertions.assertEquals("0", statements(login("testuser1", "password", 200)));
+        Assertions.assertEquals("0", statements(login("testuser1", "wrong", 401)));
+        Assertions.assertEquals(2, statistics.getDomainDataRegionStatistics("account").getHitCount());
+
+        Assertions.assertEquals(200, send("/register", "{\"username\":\"newuser\",\"password\":\"password\"}").statusCode());
+        Assertions.assertEquals("0", statements(login("testuser1", "password", 200)));
+        Assertions.assertEquals("1", statements(login("newuser", "password", 200)));
+        Assertions.assertEquals("0", statements(login("newuser", "password", 200)));
+    }
+
+    /**
+     * With messages cached, the native update and delete still evict them.
+     */
+    @Test
+    public void cachedMessagesFollowWrites() throws IOException, InterruptedException {
+        setUp("--social-media.messages.second-level-cache.enabled=true");
+        Assertions.assertEquals(200, get("/messages/9999").statusCode());
+        Assertions.assertEquals(1, statistics.getDomainDataRegionStatistics("message").getPutCount());
+
+        Assertions.assertEquals(200, send("/messages/9999", "PATCH", "{\"message_text\":\"updated message\"}").statusCode());
+        Assertions.assertTrue(get("/messages/9999").body().contains("updated message"));
+
+        Assertions.assertEquals(200, send("/messages/9999", "DELETE", null).statusCode());
+        Assertions.assertEquals("", get("/messages/9999").body());
+    }
+
+    private HttpResponse<String> login(String username, String password, int expectedStatus) throws IOException, InterruptedException {
+        HttpResponse<String> response = send("/login", "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}");
+        Assertions.assertEquals(expectedStatus, response.statusCode());
+        return response;
+    }
+
+    private static String statements(HttpResponse<String> response) {
+        return response.headers().firstValue(StatementCountHeaderAdvice.STATEMENT_COUNT_HEADER).orElseThrow();
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> send(String path, String json) throws IOException, InterruptedException {
+        return send(path, "POST", json);
+    }
+
+    private HttpResponse<String> send(String path, String method, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
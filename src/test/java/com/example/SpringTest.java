@@ -11,6 +11,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
 import org.springframework.boot.SpringApplication;
 import org.springframework.context.ApplicationContext;
 
@@ -46,6 +47,7 @@ public class SpringTest {
      * The SocialMediaController must be a bean in order for this test to pass.
      */
     @Test
+    @DisabledIfSystemProperty(named = "spring.profiles.active", matches = "reactive", disabledReason = "The reactive profile serves the API from ReactiveSocialMediaController")
     public void getSocialMediaControllerBean(){
         SocialMediaController bean = applicationContext.getBean(SocialMediaController.class);
         Assertions.assertNotNull(bean);
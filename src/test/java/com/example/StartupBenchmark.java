@@ -0,0 +1,137 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from launching a JVM to the first successful request, for the default setup
+ * and for the fast-start profile with and without an AppCDS archive. Each launch is
+ * a fresh JVM running SocialMediaApp from the plain application jar, polled with
+ * GET /messages/9999 until the body holds that message, which needs the seed data
+ * in place; a missing message is also a 200, with an empty body. The default setup
+ * ignores the component index, which the fast-start build adds to the jar. The
+ * archive comes from a training run of the fast-start profile, stopped after its
+ * first request; it only fits the classpath it was trained on. Launches alternate
+ * between the setups and the median is reported. Runs in the package phase of
+ * mvn -Pfast-start package, with
+ *
+ *   StartupBenchmark &lt;application jar&gt; &lt;runtime classpath file&gt; &lt;archive&gt;
+ */
+public class StartupBenchmark {
+
+    static final int ROUNDS = 5;
+    static final URI FIRST_REQUEST = URI.create("http://localhost:8080/messages/9999");
+    static final String FIRST_RESPONSE = "\"message_id\":9999";
+    static final Duration POLL_INTERVAL = Duration.ofMillis(10);
+    static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    public static void main(String[] args) throws Exception {
+        String classpath = args[0] + File.pathSeparator + Files.readString(Path.of(args[1])).trim();
+        Path archive = Path.of(args[2]);
+        HttpClient webClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+        Files.deleteIfExists(archive);
+        launch(webClient, classpath, List.of("-XX:ArchiveClassesAtExit=" + archive), List.of("--spring.profiles.active=fast-start"));
+
+        List<Setup> setups = new ArrayList<>();
+        setups.add(new Setup("default", List.of("-Dspring.index.ignore=true"), List.of()));
+        setups.add(new Setup("fast-start", List.of(), List.of("--spring.profiles.active=fast-start")));
+        if (Files.exists(archive)) {
+            setups.add(new Setup("fast-start + AppCDS", List.of("-XX:SharedArchiveFile=" + archive), List.of("--spring.profiles.active=fast-start")));
+        } else {
+            System.out.println("The training run left no AppCDS archive at " + archive + "; skipping that setup");
+        }
+
+        for (int r = 0; r < ROUNDS; r++) {
+            for (Setup setup : setups) {
+                setup.millis[r] = launch(webClient, classpath, setup.jvmArgs, setup.applicationArgs);
+            }
+        }
+
+        long baseline = setups.get(0).median();
+        for (Setup setup : setups) {
+            System.out.printf("%s: %d ms to first successful request (median of %d, %+.1f%% vs default)%n",
+                setup.name, setup.median(), ROUNDS, 100.0 * (setup.median() - baseline) / baseline);
+        }
+    }
+
+    static class Setup {
+        final String name;
+        final List<String> jvmArgs;
+        final List<String> applicationArgs;
+        final long[] millis = new long[ROUNDS];
+
+        Setup(String name, List<String> jvmArgs, List<String> applicationArgs) {
+            this.name = name;
+            this.jvmArgs = jvmArgs;
+            this.applicationArgs = applicationArgs;
+        }
+
+        long median() {
+            long[] sorted = millis.clone();
+            Arrays.sort(sorted);
+            return sorted[sorted.length / 2];
+        }
+    }
+
+    /**
+     * Start the application, wait for its first successful request and stop it the way
+     * an orchestrator would, with SIGTERM, so the JVM exits normally.
+     *
+     * @return the milliseconds from launch to the first successful request
+     */
+    private static long launch(HttpClient webClient, String classpath, List<String> jvmArgs, List<String> applicationArgs)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-classpath");
+        command.add(classpath);
+        command.add(SocialMediaApp.class.getName());
+        command.addAll(applicationArgs);
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(FIRST_REQUEST).timeout(TIMEOUT).build();
+            while (true) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("The application exited with " + process.exitValue() + ": " + command);
+                }
+                if (System.nanoTime() - start > TIMEOUT.toNanos()) {
+                    throw new IllegalStateException("No successful request within " + TIMEOUT + ": " + command);
+                }
+
+                try {
+                    HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() == 200 && response.body().contains(FIRST_RESPONSE)) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (ConnectException ex) {
+                    // Not listening yet.
+                }
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            }
+        } finally {
+            process.destroy();
+            if (!process.waitFor(TIMEOUT.toSeconds(), TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import javax.servlet.ServletException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.example.controller.StatementBudgetFilter;
+import com.example.controller.StatementCountHeaderAdvice;
+import com.example.repository.StatementCounter;
+
+@DisabledIfSystemProperty(named = "spring.profiles.active", matches = "reactive",
+    disabledReason = "statement counting wraps the JDBC DataSource, which the reactive stack does not use")
+public class StatementCountTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    public void setUp(String... args) throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Each read and write endpoint issues exactly one statement; a cached message issues none.
+     */
+    @Test
+    public void oneStatementPerRequest() throws IOException, InterruptedException {
+        setUp();
+        Assertions.assertEquals(1, statements(get("/accounts/9999/messages")));
+        Assertions.assertEquals(1, statements(get("/messages")));
+        Assertions.assertEquals(1, statements(get("/messages/9999")));
+        Assertions.assertEquals(0, statements(get("/messages/9999")));
+        Assertions.assertEquals(1, statements(send("/login", "POST", "{\"username\":\"testuser1\",\"password\":\"password\"}")));
+        Assertions.assertEquals(1, statements(send("/register", "POST", "{\"username\":\"user\",\"password\":\"password\"}")));
+        Assertions.assertEquals(1, statements(send("/messages/9999", "PATCH", "{\"message_text\":\"updated message\"}")));
+        Assertions.assertEquals(1, statements(send("/messages/9999", "DELETE", null)));
+    }
+
+    /**
+     * The counts are carried over to the JDBC executor's threads in async mode.
+     */
+    @Test
+    public void countsFollowAsyncHandlers() throws IOException, InterruptedException {
+        setUp("--social-media.async.enabled=true");
+        Assertions.assertEquals(1, statements(get("/accounts/9999/messages")));
+        Assertions.assertEquals(1, statements(send("/messages/9999", "DELETE", null)));
+    }
+
+    /**
+     * An endpoint that goes over its budget is flagged, and one within it is not. The
+     * filter is called directly: over HTTP, the budget is checked as the request
+     * completes, which can be after a response with a Content-Length reached the client.
+     */
+    @Test
+    public void overBudgetIsFlagged() throws IOException, InterruptedException, ServletException {
+        setUp("--social-media.statements.budgets.accounts.messages=0");
+        Assertions.assertEquals(Boolean.TRUE, filter("accounts.messages").getAttribute(StatementBudgetFilter.OVER_BUDGET_ATTRIBUTE));
+        Assertions.assertNull(filter("messages.list").getAttribute(StatementBudgetFilter.OVER_BUDGET_ATTRIBUTE));
+    }
+
+    /**
+     * Run one statement for an endpoint through the budget filter.
+     *
+     * @return the filtered request
+     */
+    private MockHttpServletRequest filter(String endpoint) throws IOException, ServletException {
+        StatementCounter statementCounter = app.getBean(StatementCounter.class);
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        app.getBean(StatementBudgetFilter.class).doFilter(request, new MockHttpServletResponse(), (filteredRequest, response) -> {
+            statementCounter.current().setEndpoint(endpoint);
+            jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+        });
+        return request;
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> send(String path, String method, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static int statements(HttpResponse<String> response) {
+        Assertions.assertEquals(200, response.statusCode(), response.uri().toString());
+        return Integer.parseInt(response.headers().firstValue(StatementCountHeaderAdvice.STATEMENT_COUNT_HEADER).orElseThrow());
+    }
+}
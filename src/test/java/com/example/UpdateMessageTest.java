@@ -6,13 +6,20 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.SpringApplication;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
 
+import com.example.entity.Message;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class UpdateMessageTest {
@@ -55,12 +62,18 @@ public class UpdateMessageTest {
                 .method("PATCH", HttpRequest.BodyPublishers.ofString(json))
                 .header("Content-Type", "application/json")
                 .build();
+        Statistics statistics = app.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
         HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
         System.out.println(response);
         int status = response.statusCode();
         Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
         Integer actualResult = objectMapper.readValue(response.body().toString(), Integer.class);
         Assertions.assertTrue(actualResult.equals(1), "Expected to modify 1 row, but actually modified " + actualResult + " rows.");
+        // Hibernate statistics only see the JPA stack's statements
+        if (!app.getBean(Environment.class).acceptsProfiles(Profiles.of("reactive"))) {
+            Assertions.assertEquals(1, statistics.getPrepareStatementCount(), "Expected a single SQL statement for the PATCH");
+        }
     }
 
 
@@ -123,4 +136,35 @@ public class UpdateMessageTest {
         int status = response.statusCode();
         Assertions.assertEquals(400, status, "Expected Status Code 400 - Actual Code was: " + status);
     }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/9999 (caching it), then PATCH, then GET again
+     * 
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the second GET returns the updated message_text
+     */
+    @Test
+    public void updateMessageThenGetReturnsUpdatedText() throws IOException, InterruptedException {
+        HttpRequest getRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .build();
+        HttpResponse<String> firstGet = webClient.send(getRequest, HttpResponse.BodyHandlers.ofString());
+        Message before = objectMapper.readValue(firstGet.body().toString(), Message.class);
+        Assertions.assertEquals("test message 1", before.getMessage_text());
+
+    	String json = "{\"message_text\": \"text changed\"}";
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> patchResponse = webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString());
+        int status = patchResponse.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+
+        HttpResponse<String> secondGet = webClient.send(getRequest, HttpResponse.BodyHandlers.ofString());
+        Message after = objectMapper.readValue(secondGet.body().toString(), Message.class);
+        Assertions.assertEquals("text changed", after.getMessage_text(), "Expected the updated text, not a cached copy");
+    }
 }
@@ -13,6 +13,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.SpringApplication;
 import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import com.example.entity.Account;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -104,4 +105,45 @@ public class UserLoginTest {
         int status = response.statusCode();
         Assertions.assertEquals(401, status, "Expected Status Code 401 - Actual Code was: " + status);
     }
+
+    /**
+     * Sending an http request to POST localhost:8080/login without a username
+     * 
+     * Expected Response:
+     * 	Status Code: 401
+     */
+    @Test
+    public void loginMissingUsername() throws IOException, InterruptedException {
+        String json = "{\"password\":\"password\"}";
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(401, status, "Expected Status Code 401 - Actual Code was: " + status);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/login for an account inserted
+     * straight into the table, which the username filter has never seen
+     * 
+     * Expected Response:
+     * 	Status Code: 200
+     */
+    @Test
+    public void loginAccountMissingFromUsernameFilter() throws IOException, InterruptedException {
+        app.getBean(JdbcTemplate.class).update("insert into account (username, password) values ('testuser5', 'password')");
+        String json = "{\"username\":\"testuser5\",\"password\":\"password\"}";
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        Assertions.assertEquals("testuser5", objectMapper.readValue(response.body(), Account.class).getUsername());
+    }
 }
@@ -6,6 +6,15 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -83,4 +92,57 @@ public class UserRegistrationTest {
         Assertions.assertEquals(200, status1, "Expected Status Code 200 - Actual Code was: " + status1);
         Assertions.assertEquals(409, status2, "Expected Status Code 409 - Actual Code was: " + status2);
     }
+
+    /**
+     * Sending thousands of concurrent http requests to POST localhost:8080/register, ten per username
+     * 
+     * Expected Response:
+     *  Exactly one Status Code 200 per username, every other request Status Code 409, never a 500
+     */
+    @Test
+    public void registerUserConcurrentDuplicateUsernames() throws Exception {
+        int usernames = 200;
+        int attemptsPerUsername = 10;
+        List<String> bodies = new ArrayList<String>();
+        for (int i = 0; i < usernames; i++) {
+            for (int j = 0; j < attemptsPerUsername; j++) {
+                bodies.add("{\"username\":\"concurrent" + i + "\",\"password\":\"password\"}");
+            }
+        }
+        Collections.shuffle(bodies);
+
+        Map<String, AtomicInteger> successes = new ConcurrentHashMap<String, AtomicInteger>();
+        Map<Integer, AtomicInteger> statuses = new ConcurrentHashMap<Integer, AtomicInteger>();
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (String json : bodies) {
+                futures.add(executor.submit(() -> {
+                    HttpRequest postRequest = HttpRequest.newBuilder()
+                            .uri(URI.create("http://localhost:8080/register"))
+                            .POST(HttpRequest.BodyPublishers.ofString(json))
+                            .header("Content-Type", "application/json")
+                            .build();
+                    HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+                    statuses.computeIfAbsent(response.statusCode(), status -> new AtomicInteger()).incrementAndGet();
+                    if (response.statusCode() == 200) {
+                        successes.computeIfAbsent(json, body -> new AtomicInteger()).incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assertions.assertEquals(2, statuses.size(), "Expected only 200 and 409 responses, got " + statuses);
+        Assertions.assertEquals(usernames, statuses.get(200).get(), "Expected one 200 per username, got " + statuses);
+        Assertions.assertEquals(usernames * (attemptsPerUsername - 1), statuses.get(409).get(), "Expected 409 for every duplicate, got " + statuses);
+        for (AtomicInteger count : successes.values()) {
+            Assertions.assertEquals(1, count.get(), "Expected exactly one successful registration per username");
+        }
+    }
 }